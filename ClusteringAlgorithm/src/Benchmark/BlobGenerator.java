@@ -0,0 +1,96 @@
+package Benchmark;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * BlobGenerator makes synthetic data sets of Gaussian blobs, the kind of data K Means is built for.
+ * Blob centers are uniform in a box, and each point is a random center plus Gaussian noise.
+ * Points are made in parallel blocks, each block with its own random stream split from one seeded stream in
+ * block order before any block starts, so the same seed gives the same data no matter how many threads run.
+ * @author Nick Farrenkopf
+ */
+public class BlobGenerator {
+
+	// Points per block made by one thread
+	private static final int blockSize = 8192;
+
+	// Blob variables
+	private double[][] centers;
+	private double spread;
+	private long seed;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes generator with random blob centers
+	 * @param dims - integer number of dimensions
+	 * @param numBlobs - integer number of blobs
+	 * @param range - double side of box centers are placed in
+	 * @param spread - double standard deviation of each blob
+	 * @param seed - long seed for centers and points
+	 */
+	public BlobGenerator(int dims, int numBlobs, double range, double spread, long seed)
+	{
+		this.spread = spread;
+		this.seed = seed;
+		Random rand = new Random(seed);
+		centers = new double[numBlobs][dims];
+		for (double[] c:centers)
+			for (int j=0; j<dims; j++)
+				c[j] = rand.nextDouble() * range;
+	}
+
+	///// GENERATE METHODS /////
+
+	/**
+	 * Returns points drawn from the blobs, made in parallel blocks
+	 * @param n - integer number of points
+	 * @return double[][] - points by rows
+	 */
+	public double[][] generate(int n)
+	{
+		double[][] rows = new double[n][];
+		int numBlocks = (n + blockSize - 1) / blockSize;
+		
+		// Split streams in order, since split streams do not overlap but nearby seeds may
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] streams = new SplittableRandom[numBlocks];
+		for (int b=0; b<numBlocks; b++)
+			streams[b] = root.split();
+		IntStream.range(0, numBlocks).parallel().forEach(b -> {
+			SplittableRandom rand = streams[b];
+			int end = Math.min(n, (b + 1) * blockSize);
+			for (int i=b*blockSize; i<end; i++)
+			{
+				double[] c = centers[rand.nextInt(centers.length)];
+				double[] p = new double[c.length];
+				for (int j=0; j<c.length; j++)
+					p[j] = c[j] + gaussian(rand) * spread;
+				rows[i] = p;
+			}
+		});
+		return rows;
+	}
+
+	/**
+	 * Returns standard normal value by Box Muller
+	 * @param rand - SplittableRandom to draw from
+	 * @return double
+	 */
+	private static double gaussian(SplittableRandom rand)
+	{
+		return Math.sqrt(-2 * Math.log(1 - rand.nextDouble())) * Math.cos(2 * Math.PI * rand.nextDouble());
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns blob centers
+	 * @return double[][]
+	 */
+	public double[][] getCenters()
+	{
+		return centers;
+	}
+}
@@ -0,0 +1,461 @@
+package Benchmark;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import FileThings.TextFile;
+import KMeans.Assignment;
+import KMeans.ColumnStats;
+import KMeans.CoresetBuilder;
+import KMeans.DataFile;
+import KMeans.DimensionReducer;
+import KMeans.KMeans;
+import KMeans.QuantizedAssigner;
+import KMeans.SpaceFillingCurve;
+import KMeans.Vectors;
+import KMeans.WeightedPoints;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * ScalingBenchmark measures how the K Means engines scale with number of points, dimensions, centroids and threads.
+ * For every cell of the sweep it generates Gaussian blobs, writes them as text and binary, and times loading each.
+ * Then each engine variant is timed to converge (and run all for restart based variants), recording inertia,
+ * iterations, peak resident memory and garbage collection time. Cells too large for the heap are written as skipped.
+ * Engines iterate on one thread, so only variants with parallel passes are run again at later thread counts.
+ * Every variant starts from random streams of the seed, so two versions are timed on the same runs.
+ * Every row carries a version label, so reports from two versions can be put side by side with compare.
+ * Arguments are key=value, lists split by commas, for example n=1000,100000 d=2,32 k=8 threads=1,8 version=abc.
+ * Running "compare old.csv new.csv" prints how much faster the new report is for every matching row.
+ * @author Nick Farrenkopf
+ */
+public class ScalingBenchmark {
+
+	// Report columns
+	private static final String header = "version,n,d,k,threads,variant,load_text_ms,load_binary_ms,converge_ms,"
+			+ "iterations,run_all_ms,inertia,peak_rss_mb,gc_ms";
+	
+	// Variants whose time depends on number of threads
+	private static final Set<String> threadedVariants = Set.of("pca", "lockstep");
+
+	// Sweep settings
+	private String version;
+	private int[] sizes;
+	private int[] dims;
+	private int[] centroids;
+	private int[] threads;
+	private String[] variants;
+	private int stableRestarts;
+	private long textLimit;
+	private long seed;
+	private Path workDir;
+
+	///// MAIN /////
+
+	/**
+	 * Runs the sweep and writes the report, or compares two reports
+	 * @param args - String[] key=value settings, or compare and two report paths
+	 * @throws Exception if files cannot be written or a run fails
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length == 3 && args[0].equals("compare"))
+		{
+			compare(Paths.get(args[1]), Paths.get(args[2]));
+			return;
+		}
+		HashMap<String, String> settings = new HashMap<>();
+		for (String arg:args)
+		{
+			int eq = arg.indexOf('=');
+			if (eq < 0)
+				throw new IllegalArgumentException("Arguments must be key=value: " + arg);
+			settings.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		ScalingBenchmark bench = new ScalingBenchmark(settings);
+		Path out = Paths.get(settings.getOrDefault("out", "benchmark-" + bench.version + ".csv"));
+		bench.run(out);
+	}
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes sweep from settings, defaulting to the full grid
+	 * @param settings - HashMap<String, String> of key=value settings
+	 */
+	public ScalingBenchmark(HashMap<String, String> settings)
+	{
+		version = settings.getOrDefault("version", "dev");
+		sizes = ints(settings.getOrDefault("n", "1000,10000,100000,1000000,10000000,100000000"));
+		dims = ints(settings.getOrDefault("d", "2,8,32,128,512"));
+		centroids = ints(settings.getOrDefault("k", "2,8,32,128,1024"));
+		threads = ints(settings.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors()));
+		variants = settings.getOrDefault("variants", "standard,yinyang,partial,quantized,auto,lockstep,curve,coreset,pca").split(",");
+		stableRestarts = Integer.parseInt(settings.getOrDefault("restarts", "5"));
+		textLimit = Long.parseLong(settings.getOrDefault("textLimit", "10000000"));
+		seed = Long.parseLong(settings.getOrDefault("seed", "1"));
+		workDir = Paths.get(settings.getOrDefault("work", System.getProperty("java.io.tmpdir")));
+	}
+
+	///// SWEEP METHODS /////
+
+	/**
+	 * Runs every cell of the sweep, writing each row as soon as it is measured
+	 * @param out - Path of report
+	 * @throws Exception if a file cannot be written or a run fails
+	 */
+	public void run(Path out) throws Exception
+	{
+		try (PrintWriter report = new PrintWriter(Files.newBufferedWriter(out)))
+		{
+			// Environment, then column names
+			report.println("# version=" + version + " java=" + System.getProperty("java.version")
+					+ " cores=" + Runtime.getRuntime().availableProcessors()
+					+ " heap_mb=" + Runtime.getRuntime().maxMemory() / (1 << 20) + " date=" + Instant.now());
+			report.println(header);
+			for (int n:sizes)
+				for (int d:dims)
+					for (int k:centroids)
+						for (int t:threads)
+						{
+							// Only first thread count runs single threaded variants
+							String cell = version + "," + n + "," + d + "," + k + "," + t;
+							String[] cellVariants = t == threads[0] ? variants : Arrays.stream(variants)
+									.filter(threadedVariants::contains).toArray(String[]::new);
+							if (cellVariants.length == 0)
+								continue;
+							if (k > n || !fits(n, d))
+							{
+								report.println(cell + ",skipped,,,,,,,,");
+								report.flush();
+								continue;
+							}
+							ForkJoinPool pool = new ForkJoinPool(t);
+							try
+							{
+								for (String row:pool.submit(() -> runCell(n, d, k, cellVariants)).get())
+									report.println(cell + "," + row);
+							} finally {
+								pool.shutdown();
+							}
+							report.flush();
+						}
+		}
+	}
+
+	/**
+	 * Measures one cell. Runs inside a pool of the wanted size, so parallel streams use that many threads.
+	 * @param n - integer number of points
+	 * @param d - integer number of dimensions
+	 * @param k - integer number of centroids
+	 * @param cellVariants - String[] variants to run
+	 * @return ArrayList<String> - report row after the cell columns, one per variant
+	 * @throws IOException if data files cannot be written or read
+	 */
+	private ArrayList<String> runCell(int n, int d, int k, String[] cellVariants) throws IOException
+	{
+		// Generate and time loading each layout
+		double[][] rows = new BlobGenerator(d, k, 100, 5, seed).generate(n);
+		Path bin = workDir.resolve("blobs-" + n + "-" + d + "-" + k + ".bin");
+		DataFile.writeBinary(rows, bin);
+		long start = System.nanoTime();
+		Matrix data = DataFile.readBinary(bin);
+		double loadBinary = millis(start);
+		Files.deleteIfExists(bin);
+		String loadText = "";
+		if ((long) n * d <= textLimit)
+		{
+			Path text = workDir.resolve("blobs-" + n + "-" + d + "-" + k + ".txt");
+			DataFile.writeText(rows, text);
+			start = System.nanoTime();
+			TextFile.readFileToMatrix(text.toString(), 0, Integer.MAX_VALUE);
+			loadText = String.format("%.3f", millis(start));
+			Files.deleteIfExists(text);
+		}
+		rows = null;
+
+		// Time each variant that applies to this cell
+		ArrayList<String> results = new ArrayList<>();
+		for (String variant:cellVariants)
+		{
+			if (variant.equals("curve") && d > maxCurveDimensions)
+				continue;
+			if (variant.equals("pca") && d < 2 * k)
+				continue;
+			resetPeaks();
+			long gcBefore = gcMillis();
+			String row = runVariant(variant, data, k);
+			results.add(variant + "," + loadText + "," + String.format("%.3f", loadBinary) + "," + row + ","
+					+ String.format("%.1f", peakMemoryMB()) + "," + (gcMillis() - gcBefore));
+		}
+		return results;
+	}
+
+	/**
+	 * Times one engine variant to converge, and run all for variants that restart the standard engine
+	 * @param variant - String name of variant
+	 * @param data - Matrix of data
+	 * @param k - integer number of centroids
+	 * @return String - converge time, iterations, run all time and inertia on the full data
+	 */
+	private String runVariant(String variant, Matrix data, int k)
+	{
+		Random rand = new Random(seed);
+		KMeans km;
+		long start = System.nanoTime();
+		switch (variant)
+		{
+			// Engine with an assignment mode, timed to converge then run all
+			case "standard":
+			case "yinyang":
+			case "partial":
+			case "auto":
+				km = new KMeans(data, null, k, rand);
+				km.setSeed(seed);
+				km.setAssignment(Assignment.valueOf(variant.toUpperCase()));
+				km.converge();
+				double converge = millis(start);
+				int iterations = km.getAllCentroids().size() - 1;
+				km.setStableRestarts(stableRestarts);
+				start = System.nanoTime();
+				km.runAll();
+				return String.format("%.3f,%d,%.3f,%.6e", converge, iterations, millis(start), km.getInertia());
+
+			// Quantized engine only runs when auto mode picks it, so its passes are timed to converge directly
+			case "quantized":
+				return convergeQuantized(data, new KMeans(data, null, k, rand), start);
+
+			// Run all restarts in lockstep batches, only run all is timed
+			case "lockstep":
+				km = new KMeans(data, null, k, rand);
+				km.setSeed(seed);
+				km.setStableRestarts(stableRestarts);
+				start = System.nanoTime();
+				km.runAllLockstep();
+				return String.format(",,%.3f,%.6e", millis(start), km.getInertia());
+
+			// Rows in Hilbert curve order instead of file order
+			case "curve":
+				km = new KMeans(new SpaceFillingCurve(data).reorder(data), null, k, rand);
+				km.converge();
+				break;
+
+			// Converge on a coreset, then label full data once for its inertia
+			case "coreset":
+				CoresetBuilder builder = new CoresetBuilder(k, Math.min(data.numRows(), Math.max(200, 20 * k)), rand);
+				double[][] points = Vectors.toArray(data);
+				for (double[] p:points)
+					builder.add(p);
+				WeightedPoints coreset = builder.build();
+				KMeans small = new KMeans(coreset.toMatrix(), coreset.getWeights(), k, rand);
+				small.converge();
+				double coresetTime = millis(start);
+				km = new KMeans(data, small.getCentroids());
+				return String.format("%.3f,%d,,%.6e", coresetTime, small.getAllCentroids().size() - 1, km.getInertia());
+
+			// Converge on top principal components, centroids lifted back to full data
+			case "pca":
+				km = DimensionReducer.pca(data, 2 * k, rand).cluster(data, k, seed);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown variant: " + variant);
+		}
+		return String.format("%.3f,%d,,%.6e", millis(start), km.getAllCentroids().size() - 1, km.getInertia());
+	}
+
+	/**
+	 * Converges with the quantized assigner from the starting labels of a K Means, moving centroids to means
+	 * after each pass as K Means does
+	 * @param data - Matrix of data
+	 * @param km - KMeans with starting centroids and labels
+	 * @param start - long nano time timing started
+	 * @return String - converge time, iterations and inertia
+	 */
+	private static String convergeQuantized(Matrix data, KMeans km, long start)
+	{
+		// Byte columns in variance order, found without copying data
+		int n = data.numRows(), d = data.numCols();
+		ColumnStats stats = new ColumnStats(d);
+		double[] row = new double[d];
+		for (int i=0; i<n; i++)
+		{
+			for (int j=0; j<d; j++)
+				row[j] = data.getValue(i, j);
+			stats.add(row);
+		}
+		QuantizedAssigner assigner = new QuantizedAssigner(data, n, stats.getVarianceOrder());
+
+		// Move centroids to means, empty ones staying put, then label until no label changes
+		double[][] cents = Vectors.toArray(km.getCentroids());
+		double[][] sums = new double[cents.length][d];
+		int[] labels = km.getDataCentroidIndex().clone();
+		double[] minDists = new double[n], secondDists = new double[n], counts = new double[cents.length];
+		int iterations = 0, changed;
+		do {
+			for (double[] s:sums)
+				Arrays.fill(s, 0);
+			Arrays.fill(counts, 0);
+			for (int i=0; i<n; i++)
+			{
+				counts[labels[i]]++;
+				for (int j=0; j<d; j++)
+					sums[labels[i]][j] += data.getValue(i, j);
+			}
+			for (int c=0; c<cents.length; c++)
+				for (int j=0; j<d && counts[c] > 0; j++)
+					cents[c][j] = sums[c][j] / counts[c];
+			changed = assigner.assign(cents, labels, minDists, secondDists);
+			iterations++;
+		} while (changed > 0 && iterations < maxNumberIterations);
+		return String.format("%.3f,%d,,%.6e", millis(start), iterations, Arrays.stream(minDists).sum());
+	}
+
+	///// MEASURE METHODS /////
+
+	/**
+	 * Returns whether a cell's data and its copies fit comfortably in the heap
+	 * @param n - integer number of points
+	 * @param d - integer number of dimensions
+	 * @return boolean
+	 */
+	private static boolean fits(int n, int d)
+	{
+		// Generated rows, loaded Matrix, engine copy and array copies
+		return 4.0 * n * d * Double.BYTES < 0.6 * Runtime.getRuntime().maxMemory();
+	}
+
+	/**
+	 * Resets peak resident memory of the process where the system allows it, and peak heap pool usage
+	 */
+	private static void resetPeaks()
+	{
+		try
+		{
+			Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes());
+		} catch (IOException | SecurityException e) {
+			// Not Linux or not allowed, peak is then since process start
+		}
+		for (MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+	}
+
+	/**
+	 * Returns peak resident memory in megabytes, falling back to summed peak of memory pools if not on Linux
+	 * @return double
+	 */
+	private static double peakMemoryMB()
+	{
+		try (BufferedReader in = Files.newBufferedReader(Paths.get("/proc/self/status")))
+		{
+			String line;
+			while ((line = in.readLine()) != null)
+				if (line.startsWith("VmHWM:"))
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+		} catch (IOException e) {
+			// Fall back to memory pools
+		}
+		long peak = 0;
+		for (MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans())
+			peak += pool.getPeakUsage().getUsed();
+		return peak / (double) (1 << 20);
+	}
+
+	/**
+	 * Returns total garbage collection time of all collectors so far
+	 * @return long
+	 */
+	private static long gcMillis()
+	{
+		long total = 0;
+		for (GarbageCollectorMXBean gc:ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	/**
+	 * Returns milliseconds since a start time
+	 * @param start - long start from System.nanoTime
+	 * @return double
+	 */
+	private static double millis(long start)
+	{
+		return (System.nanoTime() - start) / 1e6;
+	}
+
+	/**
+	 * Parses a comma separated list of integers
+	 * @param list - String list
+	 * @return int[]
+	 */
+	private static int[] ints(String list)
+	{
+		return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+	}
+
+	///// COMPARE METHODS /////
+
+	/**
+	 * Prints how much faster the new report is than the old for every row present in both,
+	 * as old time over new time for converge and run all
+	 * @param oldReport - Path of older report
+	 * @param newReport - Path of newer report
+	 * @throws IOException if a report cannot be read
+	 */
+	public static void compare(Path oldReport, Path newReport) throws IOException
+	{
+		HashMap<String, String[]> old = readReport(oldReport);
+		HashMap<String, String[]> cur = readReport(newReport);
+		System.out.println("n,d,k,threads,variant,converge_speedup,run_all_speedup,inertia_ratio");
+		for (String key:cur.keySet())
+			if (old.containsKey(key))
+			{
+				String[] a = old.get(key), b = cur.get(key);
+				System.out.println(key + "," + ratio(a[8], b[8]) + "," + ratio(a[10], b[10]) + "," + ratio(b[11], a[11]));
+			}
+	}
+
+	/**
+	 * Reads report rows keyed by cell and variant, skipping comments, header and skipped cells
+	 * @param path - Path of report
+	 * @return HashMap<String, String[]>
+	 * @throws IOException if report cannot be read
+	 */
+	private static HashMap<String, String[]> readReport(Path path) throws IOException
+	{
+		HashMap<String, String[]> rows = new HashMap<>();
+		for (String line:Files.readAllLines(path))
+		{
+			if (line.startsWith("#") || line.startsWith("version,") || line.contains(",skipped,"))
+				continue;
+			String[] parts = line.split(",", -1);
+			rows.put(String.join(",", Arrays.copyOfRange(parts, 1, 6)), parts);
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns ratio of two report values as text, empty if either is missing
+	 * @param top - String numerator
+	 * @param bottom - String denominator
+	 * @return String
+	 */
+	private static String ratio(String top, String bottom)
+	{
+		if (top.isEmpty() || bottom.isEmpty() || Double.parseDouble(bottom) == 0)
+			return "";
+		return String.format("%.3f", Double.parseDouble(top) / Double.parseDouble(bottom));
+	}
+}
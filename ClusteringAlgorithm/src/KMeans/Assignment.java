@@ -0,0 +1,21 @@
+package KMeans;
+
+/**
+ * Assignment is how K Means finds the closest centroid of each data point. Every mode gives the same labels.
+ * @author Nick Farrenkopf
+ */
+public enum Assignment {
+
+	// Checks every centroid, or searches a centroid index once there are many centroids
+	STANDARD,
+
+	// Groups centroids and keeps a lower bound per group for each point, so most distances are skipped
+	YINYANG,
+
+	// Sums dimensions in order of decreasing variance and gives up on a centroid once it is farther than the best
+	PARTIAL,
+
+	// Picks one of the above, or the quantized engine, from a cost model of this machine and data, and picks again
+	// once few labels change
+	AUTO
+}
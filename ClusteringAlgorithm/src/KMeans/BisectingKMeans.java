@@ -0,0 +1,323 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * BisectingKMeans builds clusters top down. Starting from one cluster of all the data, it splits the cluster with
+ * the largest sum of squared distances with a 2-means run on only that cluster's points, until there are k clusters.
+ * Each level of splitting touches every point once, so cost grows with n log k instead of n k.
+ * Splits of different clusters do not depend on each other, so each round splits a fixed batch of the worst
+ * clusters at the same time. Each split's random stream comes from the seed and the cluster's place in the tree,
+ * so the same seed gives the same clusters on any machine. The result can be refined with a few full K Means iterations.
+ * @author Nick Farrenkopf
+ */
+public class BisectingKMeans {
+
+	// Hold data vectors
+	private Matrix matrixData;
+	private double[][] data;
+	private int numberCentroids;
+	private long seed;
+	
+	// Split tree and point indexes of each leaf
+	private ArrayList<SplitNode> tree;
+	private ArrayList<int[]> members;
+
+	// Results
+	private Matrix centroids;
+	private int[] dataCentroidIndex;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes bisecting K Means with a random seed and splits until there are number of centroids clusters
+	 * @param matrixData - Matrix of data
+	 * @param numCentroids - integer number of centroids
+	 */
+	public BisectingKMeans(Matrix matrixData, int numCentroids)
+	{
+		this(matrixData, numCentroids, new Random().nextLong());
+	}
+	
+	/**
+	 * Initializes bisecting K Means and splits until there are number of centroids clusters
+	 * @param matrixData - Matrix of data
+	 * @param numCentroids - integer number of centroids
+	 * @param seed - long seed every split's random stream is split from
+	 * @throws IllegalArgumentException if number of centroids is not between 1 and number of distinct data points
+	 */
+	public BisectingKMeans(Matrix matrixData, int numCentroids, long seed)
+	{
+		if (numCentroids < 1 || numCentroids > matrixData.numRows())
+			throw new IllegalArgumentException("Number of centroids must be between 1 and number of data points");
+		this.matrixData = matrixData;
+		data = Vectors.toArray(matrixData);
+		numberCentroids = numCentroids;
+		this.seed = seed;
+		tree = new ArrayList<>();
+		members = new ArrayList<>();
+
+		// Root holds every point
+		int[] all = new int[data.length];
+		for (int i=0; i<all.length; i++)
+			all[i] = i;
+		double[] mean = mean(all);
+		tree.add(new SplitNode(0, -1, mean, all.length, sse(all, mean)));
+		members.add(all);
+		split();
+	}
+
+	///// BISECTING METHODS /////
+
+	/**
+	 * Splits worst leaves until there are enough, then labels data by leaf
+	 * @throws IllegalArgumentException if leaves run out of distinct points before there are enough
+	 */
+	private void split()
+	{
+		int leaves = 1;
+		while (leaves < numberCentroids)
+		{
+			// Leaves that can still be split, worst first, ties by place in tree
+			int numSplits = Math.min(numberCentroids - leaves, bisectBatchSize);
+			ArrayList<SplitNode> worst = tree.stream()
+					.filter(node -> node.isLeaf() && node.getSize() >= 2 && node.getSSE() > 0)
+					.sorted(Comparator.comparingDouble(SplitNode::getSSE).reversed()
+							.thenComparingInt(SplitNode::getId))
+					.limit(numSplits)
+					.collect(Collectors.toCollection(ArrayList::new));
+			if (worst.isEmpty())
+				throw new IllegalArgumentException("Data has only " + leaves
+						+ " distinct points, fewer than number of centroids");
+			
+			// Split chosen leaves in parallel, each with a stream split from the seed by its place in tree
+			int[][][] halves = new int[worst.size()][][];
+			IntStream.range(0, worst.size()).parallel().forEach(s ->
+				halves[s] = bisect(members.get(worst.get(s).getId()),
+						new Random(new SplittableRandom(seed + worst.get(s).getId()).nextLong())));
+
+			// Add children to tree
+			for (int s=0; s<worst.size(); s++)
+			{
+				SplitNode parent = worst.get(s);
+				int[][] half = halves[s];
+				int left = addNode(parent.getId(), half[0]);
+				int right = addNode(parent.getId(), half[1]);
+				parent.setChildren(left, right);
+				members.set(parent.getId(), null);
+				leaves++;
+			}
+		}
+
+		// Leaves become centroids
+		centroids = new Matrix(leaves, data[0].length);
+		dataCentroidIndex = new int[data.length];
+		int label = 0;
+		for (SplitNode node:tree)
+			if (node.isLeaf())
+			{
+				node.setLabel(label);
+				for (int j=0; j<data[0].length; j++)
+					centroids.setValue(label, j, node.getCentroid()[j]);
+				for (int i:members.get(node.getId()))
+					dataCentroidIndex[i] = label;
+				label++;
+			}
+	}
+
+	/**
+	 * Adds a leaf to the tree
+	 * @param parent - integer index of parent node
+	 * @param points - int[] indexes of points in leaf
+	 * @return int - index of new node
+	 */
+	private int addNode(int parent, int[] points)
+	{
+		double[] mean = mean(points);
+		int id = tree.size();
+		tree.add(new SplitNode(id, parent, mean, points.length, sse(points, mean)));
+		members.add(points);
+		return id;
+	}
+
+	/**
+	 * Splits points in two with several 2-means runs, keeping the run with the lowest sum of squared distances
+	 * @param points - int[] indexes of points to split
+	 * @param rand - Random to pick starting centroids
+	 * @return int[][] - indexes of points in each half
+	 */
+	private int[][] bisect(int[] points, Random rand)
+	{
+		boolean[] best = null;
+		double bestSSE = Double.MAX_VALUE;
+		for (int t=0; t<bisectTrials; t++)
+		{
+			// Start at two distinct random points
+			int a = points[rand.nextInt(points.length)];
+			int b = a;
+			for (int tries=0; tries<points.length && Vectors.squaredDistance(data[a], data[b]) == 0; tries++)
+				b = points[rand.nextInt(points.length)];
+			double[][] cents = {data[a].clone(), data[b].clone()};
+			boolean[] right = new boolean[points.length];
+
+			// 2-means on only these points
+			boolean changed = true;
+			for (int it=0; it<maxNumberIterations && changed; it++)
+			{
+				changed = it == 0;
+				for (int p=0; p<points.length; p++)
+				{
+					boolean r = Vectors.squaredDistance(data[points[p]], cents[1])
+							< Vectors.squaredDistance(data[points[p]], cents[0]);
+					if (r != right[p])
+					{
+						right[p] = r;
+						changed = true;
+					}
+				}
+				cents = halfMeans(points, right, cents);
+			}
+
+			// Keep best trial that has points on both sides
+			double total = 0;
+			int numRight = 0;
+			for (int p=0; p<points.length; p++)
+			{
+				total += Vectors.squaredDistance(data[points[p]], cents[right[p] ? 1 : 0]);
+				if (right[p])
+					numRight++;
+			}
+			if (numRight > 0 && numRight < points.length && total < bestSSE)
+			{
+				bestSSE = total;
+				best = right;
+			}
+		}
+
+		// Every trial collapsed to one side, so split off one point
+		if (best == null)
+		{
+			best = new boolean[points.length];
+			best[points.length - 1] = true;
+		}
+		
+		// Split indexes by side
+		int numRight = 0;
+		for (boolean r:best)
+			if (r)
+				numRight++;
+		int[][] half = {new int[points.length - numRight], new int[numRight]};
+		int l = 0, r = 0;
+		for (int p=0; p<points.length; p++)
+			if (best[p])
+				half[1][r++] = points[p];
+			else
+				half[0][l++] = points[p];
+		return half;
+	}
+
+	/**
+	 * Returns mean of each half, keeping old centroid if a half is empty
+	 * @param points - int[] indexes of points
+	 * @param right - boolean[] side of each point
+	 * @param cents - double[][] current centroids
+	 * @return double[][] - new centroids
+	 */
+	private double[][] halfMeans(int[] points, boolean[] right, double[][] cents)
+	{
+		double[][] sums = new double[2][data[0].length];
+		int[] counts = new int[2];
+		for (int p=0; p<points.length; p++)
+		{
+			int side = right[p] ? 1 : 0;
+			for (int j=0; j<data[0].length; j++)
+				sums[side][j] += data[points[p]][j];
+			counts[side]++;
+		}
+		for (int side=0; side<2; side++)
+			if (counts[side] > 0)
+				for (int j=0; j<data[0].length; j++)
+					sums[side][j] /= counts[side];
+			else
+				sums[side] = cents[side];
+		return sums;
+	}
+
+	/**
+	 * Returns mean of points
+	 * @param points - int[] indexes of points
+	 * @return double[]
+	 */
+	private double[] mean(int[] points)
+	{
+		double[] m = new double[data[0].length];
+		for (int i:points)
+			for (int j=0; j<m.length; j++)
+				m[j] += data[i][j];
+		for (int j=0; j<m.length; j++)
+			m[j] /= points.length;
+		return m;
+	}
+
+	/**
+	 * Returns sum of squared distances from points to a centroid
+	 * @param points - int[] indexes of points
+	 * @param centroid - double[] centroid
+	 * @return double
+	 */
+	private double sse(int[] points, double[] centroid)
+	{
+		double sum = 0;
+		for (int i:points)
+			sum += Vectors.squaredDistance(data[i], centroid);
+		return sum;
+	}
+
+	/**
+	 * Returns K Means started from the bisecting centroids after a number of full iterations
+	 * @param passes - integer number of iterations
+	 * @return KMeans
+	 */
+	public KMeans refine(int passes)
+	{
+		KMeans km = new KMeans(matrixData, centroids);
+		for (int i=0; i<passes && !km.isConverged(); i++)
+			km.Iterate();
+		return km;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns centroids of leaves
+	 * @return Matrix
+	 */
+	public Matrix getCentroids()
+	{
+		return centroids;
+	}
+
+	/**
+	 * Returns array of ints that labels each data point with a specified centroid
+	 * @return int[]
+	 */
+	public int[] getDataCentroidIndex()
+	{
+		return dataCentroidIndex;
+	}
+
+	/**
+	 * Returns split tree, root first. Children always come after their parent.
+	 * @return ArrayList<SplitNode>
+	 */
+	public ArrayList<SplitNode> getSplitTree()
+	{
+		return tree;
+	}
+}
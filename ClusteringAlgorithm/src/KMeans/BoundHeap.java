@@ -0,0 +1,175 @@
+package KMeans;
+import java.util.Arrays;
+
+/**
+ * BoundHeap keeps data points in one min heap per centroid, keyed by how far centroids can drift before the point's
+ * bounds cross. Since bounds only loosen as centroids drift, the points that need checking are always at the top of
+ * their centroid's heap, so they are found without looking at any of the rest.
+ * Each point is in the heap of its label, and its position is kept so its key or label can change in place.
+ * @author Nick Farrenkopf
+ */
+public class BoundHeap {
+
+	// Heap of each centroid and its size
+	private int[][] heaps;
+	private int[] sizes;
+
+	// Key, centroid and heap position of each point, centroid -1 if in no heap
+	private double[] keys;
+	private int[] owners;
+	private int[] positions;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes empty heaps
+	 * @param numCentroids - integer number of centroids
+	 * @param capacity - integer number of points there is room for
+	 */
+	public BoundHeap(int numCentroids, int capacity)
+	{
+		heaps = new int[numCentroids][1];
+		sizes = new int[numCentroids];
+		keys = new double[0];
+		owners = new int[0];
+		positions = new int[0];
+		grow(capacity);
+	}
+
+	///// HEAP METHODS /////
+
+	/**
+	 * Makes room for more points, which start in no heap
+	 * @param capacity - integer number of points there is room for
+	 */
+	public void grow(int capacity)
+	{
+		int old = owners.length;
+		if (capacity <= old)
+			return;
+		keys = Arrays.copyOf(keys, capacity);
+		owners = Arrays.copyOf(owners, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		Arrays.fill(owners, old, capacity, -1);
+	}
+
+	/**
+	 * Puts a point in a centroid's heap with a key, moving it from its old heap or changing its key if needed
+	 * @param i - integer index of point
+	 * @param c - integer index of centroid
+	 * @param key - double key, smaller is checked sooner
+	 */
+	public void set(int i, int c, double key)
+	{
+		// Same heap, so move up or down from where it is
+		if (owners[i] == c)
+		{
+			double old = keys[i];
+			keys[i] = key;
+			if (key < old)
+				siftUp(c, positions[i]);
+			else
+				siftDown(c, positions[i]);
+			return;
+		}
+
+		// Leave old heap, then add at bottom of new one
+		if (owners[i] >= 0)
+			remove(i);
+		if (sizes[c] == heaps[c].length)
+			heaps[c] = Arrays.copyOf(heaps[c], 2 * heaps[c].length);
+		keys[i] = key;
+		owners[i] = c;
+		place(c, sizes[c]++, i);
+		siftUp(c, positions[i]);
+	}
+
+	/**
+	 * Takes a point out of its heap
+	 * @param i - integer index of point
+	 */
+	private void remove(int i)
+	{
+		int c = owners[i], p = positions[i];
+		int last = heaps[c][--sizes[c]];
+		owners[i] = -1;
+		if (last == i)
+			return;
+		place(c, p, last);
+		siftUp(c, p);
+		siftDown(c, positions[last]);
+	}
+
+	/**
+	 * Moves a point up while its key is below its parent's
+	 * @param c - integer index of centroid
+	 * @param p - integer position in heap
+	 */
+	private void siftUp(int c, int p)
+	{
+		int i = heaps[c][p], parent;
+		while (p > 0)
+		{
+			parent = (p - 1) / 2;
+			if (keys[heaps[c][parent]] <= keys[i])
+				break;
+			place(c, p, heaps[c][parent]);
+			p = parent;
+		}
+		place(c, p, i);
+	}
+
+	/**
+	 * Moves a point down while a child's key is below its own
+	 * @param c - integer index of centroid
+	 * @param p - integer position in heap
+	 */
+	private void siftDown(int c, int p)
+	{
+		int i = heaps[c][p], child;
+		while ((child = 2 * p + 1) < sizes[c])
+		{
+			if (child + 1 < sizes[c] && keys[heaps[c][child + 1]] < keys[heaps[c][child]])
+				child++;
+			if (keys[i] <= keys[heaps[c][child]])
+				break;
+			place(c, p, heaps[c][child]);
+			p = child;
+		}
+		place(c, p, i);
+	}
+
+	/**
+	 * Puts a point at a position in a heap
+	 * @param c - integer index of centroid
+	 * @param p - integer position in heap
+	 * @param i - integer index of point
+	 */
+	private void place(int c, int p, int i)
+	{
+		heaps[c][p] = i;
+		positions[i] = p;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns point with the smallest key in a centroid's heap, -1 if empty
+	 * @param c - integer index of centroid
+	 * @return int
+	 */
+	public int peek(int c)
+	{
+		return sizes[c] == 0 ? -1 : heaps[c][0];
+	}
+
+	/**
+	 * Returns key of a point
+	 * @param i - integer index of point
+	 * @return double
+	 */
+	public double getKey(int i)
+	{
+		return keys[i];
+	}
+}
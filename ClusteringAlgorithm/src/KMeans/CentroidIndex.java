@@ -0,0 +1,238 @@
+package KMeans;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * CentroidIndex finds the exact closest centroid without checking every centroid.
+ * Centroids are projected onto the direction they are most spread along and sorted by projection.
+ * The distance to a centroid is at least the difference in projections, so a search starts at the
+ * query's projection and walks outward both ways, stopping once that difference passes the best distance.
+ * @author Nick Farrenkopf
+ */
+public class CentroidIndex {
+
+	// Centroids in projection order, flattened by rows
+	private double[] sorted;
+	private int[] order;
+	private double[] projections;
+	private int numberCentroids;
+	private int dims;
+
+	// Unit direction centroids are projected onto
+	private double[] axis;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Builds index over centroids
+	 * @param centroids - double[][] centroids
+	 */
+	public CentroidIndex(double[][] centroids)
+	{
+		numberCentroids = centroids.length;
+		dims = centroids[0].length;
+		axis = spreadAxis(centroids);
+
+		// Sort centroids by projection
+		double[] proj = new double[numberCentroids];
+		Integer[] idx = new Integer[numberCentroids];
+		for (int c=0; c<numberCentroids; c++)
+		{
+			idx[c] = c;
+			proj[c] = dot(centroids[c], 0, axis);
+		}
+		Arrays.sort(idx, Comparator.comparingDouble(c -> proj[c]));
+
+		// Flatten centroids in sorted order
+		order = new int[numberCentroids];
+		projections = new double[numberCentroids];
+		sorted = new double[numberCentroids * dims];
+		for (int s=0; s<numberCentroids; s++)
+		{
+			order[s] = idx[s];
+			projections[s] = proj[idx[s]];
+			System.arraycopy(centroids[idx[s]], 0, sorted, s * dims, dims);
+		}
+	}
+
+	///// INDEX METHODS /////
+
+	/**
+	 * Finds a unit direction of large centroid spread by a few rounds of power iteration on the centroid covariance
+	 * @param centroids - double[][] centroids
+	 * @return double[] - unit vector
+	 */
+	private static double[] spreadAxis(double[][] centroids)
+	{
+		int k = centroids.length;
+		int d = centroids[0].length;
+
+		// Centroid mean
+		double[] mean = new double[d];
+		for (double[] c:centroids)
+			for (int j=0; j<d; j++)
+				mean[j] += c[j] / k;
+
+		// Start along widest column, then power iterate
+		double[] v = new double[d];
+		double[] next = new double[d];
+		double best = -1, range;
+		int widest = 0;
+		for (int j=0; j<d; j++)
+		{
+			double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+			for (double[] c:centroids)
+			{
+				min = Math.min(min, c[j]);
+				max = Math.max(max, c[j]);
+			}
+			range = max - min;
+			if (range > best)
+			{
+				best = range;
+				widest = j;
+			}
+		}
+		v[widest] = 1;
+		double p, norm;
+		for (int it=0; it<Constants.indexPowerIterations; it++)
+		{
+			Arrays.fill(next, 0);
+			for (double[] c:centroids)
+			{
+				p = 0;
+				for (int j=0; j<d; j++)
+					p += (c[j] - mean[j]) * v[j];
+				for (int j=0; j<d; j++)
+					next[j] += p * (c[j] - mean[j]);
+			}
+			norm = Math.sqrt(dot(next, 0, next));
+			if (norm == 0)
+				break;
+			for (int j=0; j<d; j++)
+				v[j] = next[j] / norm;
+		}
+		return v;
+	}
+
+	/**
+	 * Returns index of exact closest centroid to a point. Ties go to the smaller centroid index.
+	 * @param point - double[] array holding point
+	 * @param offset - integer start of point in array
+	 * @return int - centroid index
+	 */
+	public int closest(double[] point, int offset)
+	{
+		return closest(point, offset, null);
+	}
+
+	/**
+	 * Returns index of exact closest centroid to a point, and a lower bound on the squared distance to any other
+	 * centroid: the second closest centroid checked, or the gap where the walk stopped if that is smaller.
+	 * Ties go to the smaller centroid index. The first centroid checked is kept until one is closer, so a point
+	 * with no finite distance, such as one holding NaN, still gets a centroid.
+	 * @param point - double[] array holding point
+	 * @param offset - integer start of point in array
+	 * @param second - double[] holding lower bound at index 0 on return, null if not needed
+	 * @return int - centroid index
+	 */
+	public int closest(double[] point, int offset, double[] second)
+	{
+		// Binary search for projection
+		double q = dot(point, offset, axis);
+		int hi = Arrays.binarySearch(projections, q);
+		if (hi < 0)
+			hi = -hi - 1;
+		int lo = hi - 1;
+
+		// Walk outward while either side could still be closer, taking first centroid checked to start
+		int best = -1;
+		double bestDist = Double.MAX_VALUE, secondDist = Double.MAX_VALUE, dist, gap;
+		double loStop = Double.MAX_VALUE, hiStop = Double.MAX_VALUE;
+		boolean goLo = lo >= 0, goHi = hi < numberCentroids;
+		while (goLo || goHi)
+		{
+			if (goHi)
+			{
+				gap = projections[hi] - q;
+				if (best >= 0 && gap * gap > bestDist)
+				{
+					goHi = false;
+					hiStop = gap * gap;
+				} else {
+					dist = distance(point, offset, hi);
+					if (best < 0 || dist < bestDist || (dist == bestDist && order[hi] < order[best]))
+					{
+						secondDist = bestDist;
+						best = hi;
+						bestDist = dist;
+					} else
+						secondDist = Math.min(secondDist, dist);
+					goHi = ++hi < numberCentroids;
+				}
+			}
+			if (goLo)
+			{
+				gap = q - projections[lo];
+				if (best >= 0 && gap * gap > bestDist)
+				{
+					goLo = false;
+					loStop = gap * gap;
+				} else {
+					dist = distance(point, offset, lo);
+					if (best < 0 || dist < bestDist || (dist == bestDist && order[lo] < order[best]))
+					{
+						secondDist = bestDist;
+						best = lo;
+						bestDist = dist;
+					} else
+						secondDist = Math.min(secondDist, dist);
+					goLo = --lo >= 0;
+				}
+			}
+		}
+
+		// Centroids past where each side stopped are at least that gap away, and NaN distances bound nothing
+		if (second != null)
+		{
+			second[0] = Math.min(secondDist, Math.min(loStop, hiStop));
+			if (Double.isNaN(second[0]))
+				second[0] = 0;
+		}
+		return order[best];
+	}
+
+	/**
+	 * Returns squared distance from point to centroid in sorted position
+	 * @param point - double[] array holding point
+	 * @param offset - integer start of point in array
+	 * @param s - integer sorted position of centroid
+	 * @return double
+	 */
+	private double distance(double[] point, int offset, int s)
+	{
+		double sum = 0, diff;
+		int base = s * dims;
+		for (int j=0; j<dims; j++)
+		{
+			diff = point[offset + j] - sorted[base + j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns dot product of a vector stored at an offset with another vector
+	 * @param a - double[] array holding first vector
+	 * @param offset - integer start of first vector
+	 * @param b - double[] second vector
+	 * @return double
+	 */
+	private static double dot(double[] a, int offset, double[] b)
+	{
+		double sum = 0;
+		for (int j=0; j<b.length; j++)
+			sum += a[offset + j] * b[j];
+		return sum;
+	}
+}
@@ -0,0 +1,224 @@
+package KMeans;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoint is the state of run all part way through: which restart it is on, the best solution so far,
+ * and the restart's own centroids, cluster sums and convergence history. Each restart draws from its own random
+ * stream split from the seed by restart index, so the seed and restart index are all the random state there is.
+ * Resuming from a checkpoint gives the same result as never stopping, since cluster sums are restored rather than
+ * summed again in a different order. In auto mode the engine in use and the work fractions the selector measured
+ * are kept too, so a resumed run picks engines as the stopped one would have rather than modeling them again.
+ * A hash of the data's values is kept with its shape, so a checkpoint is not resumed on other data of the same shape.
+ * Layout is a magic number and version as ints, then the fields below in order, doubles as big endian.
+ * @author Nick Farrenkopf
+ */
+public class Checkpoint {
+
+	// File header
+	private static final int magic = 0x4B4D4350;
+	private static final int version = 3;
+
+	// Shape and hash of data and shape of solution, checked against the run being resumed
+	int numberRows;
+	int numberCols;
+	int numberCentroids;
+	long fingerprint;
+
+	// Random seed and run all progress
+	long seed;
+	int restart;
+	int stable;
+
+	// Best solution so far, best centroids null if none yet
+	double bestInertia;
+	double[][] bestCentroids;
+
+	// Current restart
+	int iteration;
+	double inertia;
+	double lastInertia;
+	double lastDecrease;
+	double relaxation;
+	double[][] centroids;
+	double[][] clusterSums;
+	double[] clusterCounts;
+
+	// Auto mode engine of current restart and whether it was picked again, null if none,
+	// and work fractions the selector measured, null if not auto mode
+	Engine engine;
+	boolean reconsidered;
+	double[] engineWork;
+
+	///// FILE METHODS /////
+
+	/**
+	 * Writes checkpoint to a temporary file next to path and forces it to disk, then renames it over path in one step,
+	 * so a crash while writing leaves the last whole checkpoint in place
+	 * @param path - Path to write to
+	 * @throws IOException if file cannot be written
+	 */
+	public void write(Path path) throws IOException
+	{
+		// Write temporary file
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))))
+		{
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(numberRows);
+			out.writeInt(numberCols);
+			out.writeInt(numberCentroids);
+			out.writeLong(fingerprint);
+			out.writeLong(seed);
+			out.writeInt(restart);
+			out.writeInt(stable);
+			out.writeDouble(bestInertia);
+			out.writeBoolean(bestCentroids != null);
+			if (bestCentroids != null)
+				writeRows(out, bestCentroids);
+			out.writeInt(iteration);
+			out.writeDouble(inertia);
+			out.writeDouble(lastInertia);
+			out.writeDouble(lastDecrease);
+			out.writeDouble(relaxation);
+			writeRows(out, centroids);
+			writeRows(out, clusterSums);
+			for (double c:clusterCounts)
+				out.writeDouble(c);
+			out.writeUTF(engine == null ? "" : engine.name());
+			out.writeBoolean(reconsidered);
+			out.writeBoolean(engineWork != null);
+			if (engineWork != null)
+				for (double w:engineWork)
+					out.writeDouble(w);
+
+			// Contents on disk before the rename can be
+			out.flush();
+			channel.force(true);
+		}
+
+		// Replace old checkpoint
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint file
+	 * @param path - Path of checkpoint file
+	 * @return Checkpoint
+	 * @throws IOException if file cannot be read or is not a checkpoint
+	 */
+	public static Checkpoint read(Path path) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			// Header
+			if (in.readInt() != magic)
+				throw new IOException("Not a checkpoint file: " + path);
+			int v = in.readInt();
+			if (v != version)
+				throw new IOException("Unsupported checkpoint version " + v + ": " + path);
+
+			// Fields in written order
+			Checkpoint cp = new Checkpoint();
+			cp.numberRows = in.readInt();
+			cp.numberCols = in.readInt();
+			cp.numberCentroids = in.readInt();
+			if (cp.numberRows < 0 || cp.numberCols < 0 || cp.numberCentroids < 1)
+				throw new IOException("Bad checkpoint shape: " + path);
+			cp.fingerprint = in.readLong();
+			cp.seed = in.readLong();
+			cp.restart = in.readInt();
+			cp.stable = in.readInt();
+			cp.bestInertia = in.readDouble();
+			if (in.readBoolean())
+				cp.bestCentroids = readRows(in, cp.numberCentroids, cp.numberCols);
+			cp.iteration = in.readInt();
+			cp.inertia = in.readDouble();
+			cp.lastInertia = in.readDouble();
+			cp.lastDecrease = in.readDouble();
+			cp.relaxation = in.readDouble();
+			cp.centroids = readRows(in, cp.numberCentroids, cp.numberCols);
+			cp.clusterSums = readRows(in, cp.numberCentroids, cp.numberCols);
+			cp.clusterCounts = new double[cp.numberCentroids];
+			for (int i=0; i<cp.numberCentroids; i++)
+				cp.clusterCounts[i] = in.readDouble();
+			String engine = in.readUTF();
+			try
+			{
+				cp.engine = engine.isEmpty() ? null : Engine.valueOf(engine);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown engine " + engine + ": " + path);
+			}
+			cp.reconsidered = in.readBoolean();
+			if (in.readBoolean())
+			{
+				cp.engineWork = new double[EngineSelector.numberWorkFractions];
+				for (int i=0; i<cp.engineWork.length; i++)
+					cp.engineWork[i] = in.readDouble();
+			}
+			return cp;
+		}
+	}
+
+	/**
+	 * Writes rows of doubles
+	 * @param out - DataOutputStream to write to
+	 * @param rows - double[][] rows
+	 * @throws IOException if stream cannot be written
+	 */
+	private static void writeRows(DataOutputStream out, double[][] rows) throws IOException
+	{
+		for (double[] row:rows)
+			for (double v:row)
+				out.writeDouble(v);
+	}
+
+	/**
+	 * Reads rows of doubles
+	 * @param in - DataInputStream to read from
+	 * @param numRows - integer number of rows
+	 * @param numCols - integer number of columns
+	 * @return double[][]
+	 * @throws IOException if stream cannot be read
+	 */
+	private static double[][] readRows(DataInputStream in, int numRows, int numCols) throws IOException
+	{
+		double[][] rows = new double[numRows][numCols];
+		for (double[] row:rows)
+			for (int j=0; j<numCols; j++)
+				row[j] = in.readDouble();
+		return rows;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns index of restart run all was on
+	 * @return int
+	 */
+	public int getRestart()
+	{
+		return restart;
+	}
+
+	/**
+	 * Returns inertia of best solution so far, max value if none yet
+	 * @return double
+	 */
+	public double getBestInertia()
+	{
+		return bestInertia;
+	}
+}
@@ -0,0 +1,103 @@
+package KMeans;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CheckpointWriter writes checkpoints on a background thread so the run does not wait on the disk.
+ * A checkpoint is only due once the interval has passed and the last one is written, so a slow disk means
+ * fewer checkpoints rather than a queue of them, and the run only pays for copying centroids and sums.
+ * @author Nick Farrenkopf
+ */
+public class CheckpointWriter {
+
+	// File and how often to write it
+	private Path path;
+	private long intervalNanos;
+	private long lastWrite;
+
+	// Background writer and the write in flight, null if none
+	private ExecutorService executor;
+	private Future<?> pending;
+
+	// First write failure, kept until close
+	private IOException failure;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes writer, with the first checkpoint due after one interval
+	 * @param path - Path of checkpoint file
+	 * @param intervalMillis - long least milliseconds between checkpoints
+	 */
+	public CheckpointWriter(Path path, long intervalMillis)
+	{
+		this.path = path;
+		intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		lastWrite = System.nanoTime();
+		executor = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "checkpoint-writer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	///// WRITE METHODS /////
+
+	/**
+	 * Returns whether a checkpoint should be taken now
+	 * @return boolean
+	 */
+	public boolean isDue()
+	{
+		return (pending == null || pending.isDone()) && System.nanoTime() - lastWrite >= intervalNanos;
+	}
+
+	/**
+	 * Starts writing a checkpoint in the background. Checkpoint must not be changed afterwards.
+	 * @param cp - Checkpoint to write
+	 */
+	public void write(Checkpoint cp)
+	{
+		lastWrite = System.nanoTime();
+		pending = executor.submit(() -> {
+			try
+			{
+				cp.write(path);
+			} catch (IOException e) {
+				synchronized (this)
+				{
+					if (failure == null)
+						failure = e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for the write in flight and stops the background thread
+	 * @throws IOException if any checkpoint could not be written
+	 */
+	public void close() throws IOException
+	{
+		executor.shutdown();
+		try
+		{
+			if (pending != null)
+				pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IOException("Checkpoint writer failed", e.getCause());
+		}
+		synchronized (this)
+		{
+			if (failure != null)
+				throw failure;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package KMeans;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * ClusterModel is the saved result of a K Means run: the centroids plus a little metadata.
+ * It is written as a small binary file so a predictor can load it later and label new points without re-running.
+ * File layout is a magic number, version, number of centroids, dimensions, number of points trained on,
+ * inertia, creation time, then centroid values by rows.
+ * @author Nick Farrenkopf
+ */
+public class ClusterModel {
+
+	// File format variables
+	private static final int magic = 0x4B4D4E53;
+	private static final int version = 1;
+
+	// Model variables
+	private double[][] centroids;
+	private int numberPoints;
+	private double inertia;
+	private long created;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Initializes model from current state of a K Means variable
+	 * @param km - KMeans to save
+	 */
+	public ClusterModel(KMeans km)
+	{
+		this(Vectors.toArray(km.getCentroids()), km.getData().numRows(), km.getInertia(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Initializes model from centroids and metadata
+	 * @param centroids - double[][] centroids
+	 * @param numPoints - integer number of points model was trained on
+	 * @param inertia - double inertia of training data
+	 * @param created - long creation time in milliseconds
+	 */
+	public ClusterModel(double[][] centroids, int numPoints, double inertia, long created)
+	{
+		this.centroids = centroids;
+		this.numberPoints = numPoints;
+		this.inertia = inertia;
+		this.created = created;
+	}
+
+	///// FILE METHODS /////
+
+	/**
+	 * Writes model to file
+	 * @param path - Path of file
+	 * @throws IOException if file cannot be written
+	 */
+	public void save(Path path) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+		{
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(getNumberCentroids());
+			out.writeInt(getDimensions());
+			out.writeInt(numberPoints);
+			out.writeDouble(inertia);
+			out.writeLong(created);
+			for (double[] c:centroids)
+				for (double v:c)
+					out.writeDouble(v);
+		}
+	}
+
+	/**
+	 * Reads model from file
+	 * @param path - Path of file
+	 * @return ClusterModel
+	 * @throws IOException if file cannot be read or is not a model file
+	 */
+	public static ClusterModel load(Path path) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			if (in.readInt() != magic)
+				throw new IOException("Not a cluster model file: " + path);
+			int v = in.readInt();
+			if (v != version)
+				throw new IOException("Unsupported cluster model version " + v + ": " + path);
+			int k = in.readInt();
+			int d = in.readInt();
+			int n = in.readInt();
+			double inertia = in.readDouble();
+			long created = in.readLong();
+			double[][] centroids = new double[k][d];
+			for (int c=0; c<k; c++)
+				for (int j=0; j<d; j++)
+					centroids[c][j] = in.readDouble();
+			return new ClusterModel(centroids, n, inertia, created);
+		}
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns centroids
+	 * @return double[][]
+	 */
+	public double[][] getCentroids()
+	{
+		return centroids;
+	}
+
+	/**
+	 * Returns number of centroids
+	 * @return int
+	 */
+	public int getNumberCentroids()
+	{
+		return centroids.length;
+	}
+
+	/**
+	 * Returns number of dimensions of each centroid
+	 * @return int
+	 */
+	public int getDimensions()
+	{
+		return centroids.length == 0 ? 0 : centroids[0].length;
+	}
+
+	/**
+	 * Returns number of points model was trained on
+	 * @return int
+	 */
+	public int getNumberPoints()
+	{
+		return numberPoints;
+	}
+
+	/**
+	 * Returns inertia of training data
+	 * @return double
+	 */
+	public double getInertia()
+	{
+		return inertia;
+	}
+
+	/**
+	 * Returns creation time in milliseconds
+	 * @return long
+	 */
+	public long getCreated()
+	{
+		return created;
+	}
+}
@@ -0,0 +1,105 @@
+package KMeans;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * ClusterPredictor labels new points with their closest centroid from a saved model.
+ * Points are given as one flat array of rows so no per point objects are made. Batches are split into blocks
+ * that are labeled in parallel. Small models are searched directly over flattened centroids,
+ * and models with many centroids use a centroid index.
+ * @author Nick Farrenkopf
+ */
+public class ClusterPredictor {
+
+	// Flattened centroids by rows
+	private double[] centroids;
+	private int numberCentroids;
+	private int dims;
+
+	// Index for models with many centroids, null otherwise
+	private CentroidIndex index;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes predictor from a model
+	 * @param model - ClusterModel to predict with
+	 */
+	public ClusterPredictor(ClusterModel model)
+	{
+		numberCentroids = model.getNumberCentroids();
+		dims = model.getDimensions();
+		centroids = new double[numberCentroids * dims];
+		for (int c=0; c<numberCentroids; c++)
+			System.arraycopy(model.getCentroids()[c], 0, centroids, c * dims, dims);
+		if (numberCentroids >= indexMinCentroids)
+			index = new CentroidIndex(model.getCentroids());
+	}
+
+	///// PREDICT METHODS /////
+
+	/**
+	 * Labels a batch of points stored as one flat array of rows
+	 * @param points - double[] points by rows, dimensions values each
+	 * @param labels - int[] array to put labels in, one per point
+	 */
+	public void predict(double[] points, int[] labels)
+	{
+		int n = points.length / dims;
+		int numBlocks = (n + predictBlockSize - 1) / predictBlockSize;
+		IntStream.range(0, numBlocks).parallel().forEach(b -> {
+			int end = Math.min(n, (b + 1) * predictBlockSize);
+			for (int i=b*predictBlockSize; i<end; i++)
+				labels[i] = predict(points, i * dims);
+		});
+	}
+
+	/**
+	 * Labels rows of a Matrix
+	 * @param points - Matrix of points
+	 * @return int[] - label of each point
+	 */
+	public int[] predict(Matrix points)
+	{
+		double[] flat = new double[points.numRows() * dims];
+		for (int i=0; i<points.numRows(); i++)
+			for (int j=0; j<dims; j++)
+				flat[i * dims + j] = points.getValue(i, j);
+		int[] labels = new int[points.numRows()];
+		predict(flat, labels);
+		return labels;
+	}
+
+	/**
+	 * Returns label of a single point
+	 * @param points - double[] array holding point
+	 * @param offset - integer start of point in array
+	 * @return int - index of closest centroid
+	 */
+	public int predict(double[] points, int offset)
+	{
+		if (index != null)
+			return index.closest(points, offset);
+
+		// Check every centroid
+		int minIndex = 0, base;
+		double minDist = Double.MAX_VALUE, dist, diff;
+		for (int c=0; c<numberCentroids; c++)
+		{
+			dist = 0;
+			base = c * dims;
+			for (int j=0; j<dims; j++)
+			{
+				diff = points[offset + j] - centroids[base + j];
+				dist += diff * diff;
+			}
+			if (dist < minDist)
+			{
+				minIndex = c;
+				minDist = dist;
+			}
+		}
+		return minIndex;
+	}
+}
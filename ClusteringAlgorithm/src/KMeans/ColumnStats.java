@@ -0,0 +1,220 @@
+package KMeans;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * ColumnStats holds minimum, maximum, mean and variance of every column, found in one pass when data is loaded.
+ * Blocks of rows are summarized in parallel with Welford's running mean and sum of squared differences,
+ * which does not lose precision the way summing squares does, then blocks are merged pairwise.
+ * Added rows update the same running values, so stats never need a second pass over old data.
+ * @author Nick Farrenkopf
+ */
+public class ColumnStats {
+
+	// Number of rows summarized
+	private long count;
+
+	// Running values of each column, squared differences summed about the mean
+	private double[] min;
+	private double[] max;
+	private double[] mean;
+	private double[] m2;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Initializes stats with no rows
+	 * @param numCols - integer number of columns
+	 */
+	public ColumnStats(int numCols)
+	{
+		min = new double[numCols];
+		max = new double[numCols];
+		mean = new double[numCols];
+		m2 = new double[numCols];
+		Arrays.fill(min, Double.MAX_VALUE);
+		Arrays.fill(max, -Double.MAX_VALUE);
+	}
+
+	/**
+	 * Summarizes data rows in parallel blocks
+	 * @param rows - double[][] data rows
+	 */
+	public ColumnStats(double[][] rows)
+	{
+		this(rows.length == 0 ? 0 : rows[0].length);
+		int numBlocks = (rows.length + statsBlockSize - 1) / statsBlockSize;
+		ColumnStats all = IntStream.range(0, numBlocks).parallel().mapToObj(b -> {
+			ColumnStats part = new ColumnStats(min.length);
+			int end = Math.min(rows.length, (b + 1) * statsBlockSize);
+			for (int i=b*statsBlockSize; i<end; i++)
+				part.add(rows[i]);
+			return part;
+		}).reduce(ColumnStats::merge).orElse(null);
+		if (all != null)
+			merge(all);
+	}
+
+	/**
+	 * Summarizes rows of a Matrix
+	 * @param data - Matrix of data
+	 */
+	public ColumnStats(Matrix data)
+	{
+		this(Vectors.toArray(data));
+	}
+
+	///// UPDATE METHODS /////
+
+	/**
+	 * Adds a row with Welford's update
+	 * @param row - double[] data row
+	 */
+	public void add(double[] row)
+	{
+		count++;
+		double delta;
+		for (int j=0; j<mean.length; j++)
+		{
+			delta = row[j] - mean[j];
+			mean[j] += delta / count;
+			m2[j] += delta * (row[j] - mean[j]);
+			min[j] = Math.min(min[j], row[j]);
+			max[j] = Math.max(max[j], row[j]);
+		}
+	}
+
+	/**
+	 * Adds every row of a Matrix
+	 * @param data - Matrix of rows to add
+	 */
+	public void add(Matrix data)
+	{
+		double[] row = new double[data.numCols()];
+		for (int i=0; i<data.numRows(); i++)
+		{
+			for (int j=0; j<row.length; j++)
+				row[j] = data.getValue(i, j);
+			add(row);
+		}
+	}
+
+	/**
+	 * Merges other stats into these, shifting sums of squared differences to the combined mean
+	 * @param other - ColumnStats of other rows
+	 * @return ColumnStats - these stats
+	 */
+	public ColumnStats merge(ColumnStats other)
+	{
+		if (other.count == 0)
+			return this;
+		long total = count + other.count;
+		double delta;
+		for (int j=0; j<mean.length; j++)
+		{
+			delta = other.mean[j] - mean[j];
+			mean[j] += delta * other.count / total;
+			m2[j] += other.m2[j] + delta * delta * count * other.count / total;
+			min[j] = Math.min(min[j], other.min[j]);
+			max[j] = Math.max(max[j], other.max[j]);
+		}
+		count = total;
+		return this;
+	}
+
+	///// STATS METHODS /////
+
+	/**
+	 * Returns data with each column shifted to mean zero and scaled to variance one. Columns with no spread
+	 * are only shifted.
+	 * @param data - Matrix of data
+	 * @return Matrix
+	 */
+	public Matrix standardize(Matrix data)
+	{
+		Matrix m = new Matrix(data.numRows(), data.numCols());
+		double[] sd = new double[mean.length];
+		for (int j=0; j<mean.length; j++)
+			sd[j] = getVariance(j) > 0 ? Math.sqrt(getVariance(j)) : 1;
+		for (int i=0; i<data.numRows(); i++)
+			for (int j=0; j<data.numCols(); j++)
+				m.setValue(i, j, (data.getValue(i, j) - mean[j]) / sd[j]);
+		return m;
+	}
+
+	/**
+	 * Returns columns sorted by decreasing variance
+	 * @return int[]
+	 */
+	public int[] getVarianceOrder()
+	{
+		double[] var = new double[mean.length];
+		for (int j=0; j<var.length; j++)
+			var[j] = getVariance(j);
+		return PartialDistanceAssigner.sortByVariance(var);
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns number of rows summarized
+	 * @return long
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns number of columns
+	 * @return int
+	 */
+	public int getNumberColumns()
+	{
+		return mean.length;
+	}
+
+	/**
+	 * Returns minimum of a column
+	 * @param j - integer column
+	 * @return double
+	 */
+	public double getMin(int j)
+	{
+		return min[j];
+	}
+
+	/**
+	 * Returns maximum of a column
+	 * @param j - integer column
+	 * @return double
+	 */
+	public double getMax(int j)
+	{
+		return max[j];
+	}
+
+	/**
+	 * Returns mean of a column
+	 * @param j - integer column
+	 * @return double
+	 */
+	public double getMean(int j)
+	{
+		return mean[j];
+	}
+
+	/**
+	 * Returns population variance of a column, 0 with no rows
+	 * @param j - integer column
+	 * @return double
+	 */
+	public double getVariance(int j)
+	{
+		if (count == 0)
+			return 0;
+		return m2[j] / count;
+	}
+}
@@ -20,11 +20,36 @@ public class Constants {
 	
 	
 	// K Means variables
-	public static final int maxNumberCentroids = 6;
+	public static final int maxNumberCentroids = 20;
 	public static final int maxNumberIterations = 100;
 	public static final Color[] colorScheme = {Color.RED, Color.BLUE, Color.MAGENTA, 
 			Color.BLACK, Color.ORANGE, Color.GREEN};
 	public static final double epsilon = Math.pow(10, -6);
+	public static final double abandonMargin = 0.05;
+	public static final int minAbandonIterations = 3;
+	public static final int initialStableRestarts = 0;
+	public static final double signatureCellScale = 1024;
+	public static final int maxSignatureEdges = 4;
+	public static final int lockstepModels = 16;
+	public static final int lockstepBlockSize = 4096;
+	public static final int minSweepChain = 4;
+	public static final int metricsBlockSize = 4096;
+	public static final double confidenceZ = 1.96;
+	public static final int indexMinCentroids = 32;
+	public static final int indexPowerIterations = 10;
+	public static final int predictBlockSize = 4096;
+	public static final int yinyangGroupSize = 10;
+	public static final int yinyangGroupIterations = 5;
+	public static final int bisectTrials = 3;
+	public static final int bisectBatchSize = 4;
+	public static final int reduceBlockSize = 4096;
+	public static final int pcaOversample = 10;
+	public static final int pcaPowerIterations = 2;
+	public static final int maxJacobiSweeps = 50;
+	public static final double relaxGrowth = 1.5;
+	public static final double maxRelaxation = 4;
+	public static final long checkpointInterval = 30000;
+	public static final int statsBlockSize = 4096;
 	
 	
 	// Plotting variables
@@ -38,9 +63,46 @@ public class Constants {
 												"exampleData4.txt", "exampleData5.txt", "Manual"};
 	public static final int initialDataSelection = 3;
 	public static final int initialNumCentroids = 4;
+	public static final boolean initialReorderData = false;
+	public static final int maxCurveDimensions = 4;
+	public static final int maxCurveBits = 15;
+	public static final double duplicateGrid = 0;
+	public static final long datasetCacheBytes = 256L * 1024 * 1024;
+	public static final int datasetLoadThreads = 2;
+	public static final int prefetchNeighbors = 1;
+	public static final int offHeapAlignment = 64;
+	public static final int offHeapBlockSize = 4096;
+	public static final int calibrationPoints = 2048;
+	public static final int calibrationDimensions = 16;
+	public static final long calibrationMillis = 20;
+	public static final double autoSwitchFraction = 0.05;
+	public static final double yinyangRecheckFraction = 0.2;
+	public static final double partialVarianceShare = 0.5;
+	public static final double autoHeapFraction = 0.5;
+	public static final int autoHeapCopies = 3;
+	public static final int autoSampleRows = 1024;
+	public static final double quantizedSlack = Math.pow(10, -9);
+	public static final double quantizedShortlist = 2;
+	public static final int quantizedChunk = 16;
+	public static final int exportBufferBytes = 1 << 20;
 	
 	
 	// Timer variables
 	public static final int timerMessage = 4000;
 	public static final int timerIterate = 1000;
+	
+	
+	// Service variables
+	public static final int servicePort = 8080;
+	public static final int serviceWorkers = Runtime.getRuntime().availableProcessors();
+	public static final int serviceQueueSize = 16;
+	public static final long jobMemoryBytes = 512L * 1024 * 1024;
+	public static final int jobMemoryFactor = 8;
+	public static final int collapseMemoryFactor = 2;
+	public static final int uploadParseFactor = 16;
+	public static final int arrayHeaderBytes = 16;
+	public static final String serviceDataDirectory = "data";
+	public static final double serviceHeapFraction = 0.5;
+	public static final long serviceEventWait = 1000;
+	public static final int maxRetainedJobs = 256;
 }
\ No newline at end of file
@@ -1,4 +1,5 @@
 package KMeans;
+import java.util.ArrayList;
 import java.util.Timer;
 import java.util.TimerTask;
 import javax.swing.JTabbedPane;
@@ -39,8 +40,24 @@ public class Controller {
 	// KMeans variables
 	private KMeans km;
 
-	// Array to hold vector data
+	// Array to hold vector data in the order it was given
 	private Matrix data;
+	
+	// Whether K Means runs on rows in curve order, the curve order (null if not reordered),
+	// and the rows K Means runs on, a reordered copy of data if reordered and data itself otherwise
+	private boolean reorderData;
+	private SpaceFillingCurve curve;
+	private Matrix orderedData;
+	
+	// Rows appended since data was last read, added to data and ordered data in one copy when next needed,
+	// so appending costs only the rows added however many points there are
+	private ArrayList<Matrix> appended;
+	
+	// Column stats of data, found once when data is set
+	private ColumnStats stats;
+	
+	// Recently loaded data files
+	private DatasetCache cache;
 
 	// Plotting variables
 	private int[] plotIndexes;
@@ -72,6 +89,9 @@ public class Controller {
 		timer = new Timer();
 		plotIndexes = new int[] {0, 1};
 		keepRunning = false;
+		reorderData = initialReorderData;
+		appended = new ArrayList<>();
+		cache = new DatasetCache(datasetCacheBytes, datasetLoadThreads);
 	}
 
 	///// GUI /////
@@ -107,11 +127,19 @@ public class Controller {
 	///// K MEANS /////
 	
 	/**
-	 * Initialize K Means by grabbing number of centroids from Screen card 
+	 * Initialize K Means by grabbing number of centroids from Screen card.
+	 * Leaves K Means null and stops running if there are fewer data points than centroids.
 	 */
 	public void InitializeKMeans()
 	{
-		km = new KMeans(data, sc.getNumberCentroids());
+		if (sc.getNumberCentroids() > getData().numRows())
+		{
+			setMessage("Not enough data points for that many centroids.");
+			setKeepRunning(false);
+			return;
+		}
+		km = new KMeans(orderedData, sc.getNumberCentroids());
+		km.setColumnStats(stats);
 	}
 	
 	/**
@@ -129,6 +157,10 @@ public class Controller {
 	public void clearData()
 	{
 		data = new Matrix(0,0);
+		orderedData = data;
+		appended.clear();
+		curve = null;
+		stats = null;
 		resetKMeans();
 	}
 	
@@ -158,6 +190,8 @@ public class Controller {
 		// If not initialized
 		if (km == null)
 			InitializeKMeans();
+		if (km == null)
+			return;
 		km.runAll();
 		sc.repaint();
 	}
@@ -230,44 +264,19 @@ public class Controller {
 	///// PLOTTING /////
 	
 	/**
-	 * Sets data that acts as base transform, grabbing minimum and maximum of plot indexes
-	 * @param data - Matrix of data to be base transform
+	 * Sets base transform to minimum and maximum of plot indexes, read from column stats found at load time
 	 */
-	public void setTransformationData(Matrix data)
-	{	
-		// Transformation variables
-		double xmin, ymin;
-		double xmax, ymax;
-		double xvalue, yvalue;
+	public void setTransformationData()
+	{
+		// No rows means no range to scale to
 		int[] plotIndexes = getPlotIndexes();
-
-		// Sets min and max
-		xmin = data.getValue(0, plotIndexes[0]);
-		xmax = data.getValue(0, plotIndexes[0]);
-		ymin = data.getValue(0, plotIndexes[1]);
-		ymax = data.getValue(0, plotIndexes[1]);
-
-		// Iterates though list, finding maximum and minimum
-		for (int i=1; i<data.numRows(); i++)
-		{
-			xvalue = data.getValue(i, plotIndexes[0]);
-			yvalue = data.getValue(i, plotIndexes[1]);
-			if (xvalue < xmin)
-				xmin = xvalue;
-			if (xvalue > xmax)
-				xmax = xvalue;
-			if (yvalue < ymin)
-				ymin = yvalue;
-			if (yvalue > ymax)
-				ymax = yvalue;
-		}
-		
-		// Sets data
+		if (stats.getCount() == 0)
+			return;
 		transformData = new double[4];
-		transformData[0] = xmin;
-		transformData[1] = ymin;
-		transformData[2] = xmax;
-		transformData[3] = ymax;
+		transformData[0] = stats.getMin(plotIndexes[0]);
+		transformData[1] = stats.getMin(plotIndexes[1]);
+		transformData[2] = stats.getMax(plotIndexes[0]);
+		transformData[3] = stats.getMax(plotIndexes[1]);
 	}
 	
 	/**
@@ -277,6 +286,10 @@ public class Controller {
 	 */
 	public Matrix transformData(Matrix data)
 	{
+		// Nothing to scale to until data is set
+		if (transformData == null)
+			return new Matrix(0, 2);
+		
 		// Initialize some variables
 		Matrix m = new Matrix(data.numRows(), 2);
 		int[] plotIndexes = getPlotIndexes();
@@ -311,9 +324,102 @@ public class Controller {
 	public void setData(Matrix m)
 	{
 		data = m;
-		setTransformationData(data);
+		appended.clear();
+		orderData();
+		stats = new ColumnStats(data);
+		setTransformationData();
 		km = null;
 	}
+	
+	/**
+	 * Sets rows K Means runs on, reordered along a curve for locality if wanted
+	 */
+	private void orderData()
+	{
+		curve = null;
+		orderedData = data;
+		if (reorderData && data.numRows() > 0)
+		{
+			curve = new SpaceFillingCurve(data);
+			orderedData = curve.reorder(data);
+		}
+	}
+	
+	/**
+	 * Sets whether K Means runs on rows reordered along a curve. Labels are given back in the order data was given
+	 * either way. Reordering keeps a second copy of the data, and changing it resets K Means.
+	 * @param on (boolean true to reorder)
+	 */
+	public void setReorderData(boolean on)
+	{
+		reorderData = on;
+		if (data != null)
+		{
+			addAppended();
+			orderData();
+			resetKMeans();
+		}
+	}
+
+	/**
+	 * Allows data card to add points to current data. If K Means is initialized it keeps its centroids
+	 * and re-clusters from there instead of starting over.
+	 * @param m (Matrix of new data points)
+	 */
+	public void appendData(Matrix m)
+	{
+		// Nothing to warm start from
+		if (km == null || data == null || data.numRows() == 0)
+		{
+			setData(Vectors.concatenate(getData(), m));
+			return;
+		}
+		
+		// Appended rows stay at end of curve order, and wait to be copied into data until it is read
+		appended.add(m);
+		if (curve != null)
+			curve.append(m.numRows());
+		stats.add(m);
+		setTransformationData();
+		km.append(m);
+	}
+	
+	/**
+	 * Adds rows appended since data was last read to data, and to ordered data if it is a reordered copy
+	 */
+	private void addAppended()
+	{
+		if (appended.isEmpty())
+			return;
+		if (curve != null)
+			orderedData = concatenate(orderedData, appended);
+		data = concatenate(data, appended);
+		if (curve == null)
+			orderedData = data;
+		appended.clear();
+	}
+	
+	/**
+	 * Returns a Matrix with rows of each Matrix in a list below rows of first, copying each row once
+	 * @param top - Matrix of first rows
+	 * @param rest - ArrayList<Matrix> of rows to add in order
+	 * @return Matrix
+	 */
+	private static Matrix concatenate(Matrix top, ArrayList<Matrix> rest)
+	{
+		int rows = top.numRows(), cols = top.numCols(), r;
+		for (Matrix m:rest)
+			rows += m.numRows();
+		Matrix all = new Matrix(rows, cols);
+		for (r=0; r<top.numRows(); r++)
+			for (int j=0; j<cols; j++)
+				all.setValue(r, j, top.getValue(r, j));
+		for (Matrix m:rest)
+			for (int i=0; i<m.numRows(); i++, r++)
+				for (int j=0; j<cols; j++)
+					all.setValue(r, j, m.getValue(i, j));
+		return all;
+	}
 
 	/**
 	 * Allows data card to set plot indexes for ease of access.
@@ -322,8 +428,8 @@ public class Controller {
 	public void setPlotIndexes(int[] indexes)
 	{
 		plotIndexes = indexes;
-		if (data != null)
-			setTransformationData(data);
+		if (stats != null)
+			setTransformationData();
 	}
 
 	/**
@@ -347,6 +453,15 @@ public class Controller {
 		return frame;
 	}
 
+	/**
+	 * Returns cache of recently loaded data files
+	 * @return DatasetCache
+	 */
+	public DatasetCache getDatasetCache()
+	{
+		return cache;
+	}
+
 	/**
 	 * Returns K Means variable for data viewing and null checking
 	 * @return KMeans 
@@ -357,16 +472,39 @@ public class Controller {
 	}
 
 	/**
-	 * Returns for K Means algorithm, return empty matrix if no data
+	 * Returns data in the order it was given, return empty matrix if no data
 	 * @return Matrix - data matrix
 	 */
 	public Matrix getData()
 	{
 		if (data == null)
 			return new Matrix(0, 0);
+		addAppended();
 		return data;
 	} 
 
+	/**
+	 * Returns whether K Means runs on rows reordered along a curve
+	 * @return boolean
+	 */
+	public boolean isReorderData()
+	{
+		return reorderData;
+	}
+
+	/**
+	 * Returns centroid index of each data point in the order data was given, empty if K Means not initialized
+	 * @return int[] - centroid index of each point
+	 */
+	public int[] getDataCentroidIndex()
+	{
+		if (km == null)
+			return new int[0];
+		if (curve == null)
+			return km.getDataCentroidIndex();
+		return curve.toOriginalOrder(km.getDataCentroidIndex());
+	}
+
 	/** 
 	 * Returns plot indexes to view
 	 * @return int[] - Integers holding plot indexes
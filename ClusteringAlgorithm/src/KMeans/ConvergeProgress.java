@@ -0,0 +1,76 @@
+package KMeans;
+import static KMeans.Constants.*;
+
+/**
+ * ConvergeProgress is how far a run of K Means has got towards converging: iterations so far and the last inertia
+ * and decrease. With early abandon on, it also judges whether a run looks unlikely to beat the best so far:
+ * the last two decreases are extrapolated geometrically to guess where the run will level off, and if that guess is
+ * still abandon margin worse than best, the run is given up. The guess is a heuristic, not a lower bound, since
+ * decreases need not shrink geometrically, so a run that would have beaten the best can be given up.
+ * Each K Means engine decides for itself when it has converged.
+ * @author Nick Farrenkopf
+ */
+public class ConvergeProgress {
+
+	// Iterations so far and inertia history for extrapolation
+	int iteration;
+	double lastInertia;
+	double lastDecrease;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes progress of a run starting from an inertia
+	 * @param inertia - double inertia before the first iteration, NaN if not known
+	 */
+	public ConvergeProgress(double inertia)
+	{
+		reset(inertia);
+	}
+
+	///// PROGRESS METHODS /////
+
+	/**
+	 * Starts counting iterations again from an inertia
+	 * @param inertia - double inertia before the first iteration, NaN if not known
+	 */
+	public void reset(double inertia)
+	{
+		iteration = 0;
+		lastInertia = inertia;
+		lastDecrease = Double.NaN;
+	}
+
+	/**
+	 * Returns whether the run may iterate again
+	 * @return boolean
+	 */
+	public boolean hasIterationsLeft()
+	{
+		return iteration < maxNumberIterations;
+	}
+
+	/**
+	 * Records an iteration that did not converge, unless the run should be given up instead
+	 * @param inertia - double inertia after the iteration
+	 * @param bestInertia - double inertia of best run so far
+	 * @param earlyAbandon - boolean whether runs that look worse than best are given up
+	 * @return boolean - true if the run should be given up, in which case nothing is recorded
+	 */
+	public boolean abandon(double inertia, double bestInertia, boolean earlyAbandon)
+	{
+		// Guess final inertia from the ratio of the last two decreases
+		double decrease = lastInertia - inertia, ratio, estimate;
+		if (earlyAbandon && iteration >= minAbandonIterations && decrease > 0 && lastDecrease > decrease)
+		{
+			ratio = decrease / lastDecrease;
+			estimate = inertia - decrease * ratio / (1 - ratio);
+			if (estimate > bestInertia * (1 + abandonMargin))
+				return true;
+		}
+		lastDecrease = decrease;
+		lastInertia = inertia;
+		iteration++;
+		return false;
+	}
+}
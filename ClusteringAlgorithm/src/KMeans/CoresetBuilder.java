@@ -0,0 +1,315 @@
+package KMeans;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * CoresetBuilder summarizes a huge data set as a small set of weighted points that clusters about the same.
+ * Points stream in once and fill a bucket. Full buckets go into a merge and reduce tree: two coresets at the same
+ * level are merged and reduced back to coreset size, like carrying in binary addition. Only one coreset per level
+ * is held, so memory is coreset size times log of number of buckets.
+ * Reducing uses sensitivity sampling. A rough clustering is found by weighted D squared seeding, and each point
+ * is sampled by how much it could matter to any clustering: its share of the rough cost plus its share of its
+ * rough cluster's weight. Sampled points are reweighted so weights stay unbiased.
+ * @author Nick Farrenkopf
+ */
+public class CoresetBuilder {
+
+	// Coreset variables
+	private int numberCentroids;
+	private int coresetSize;
+	private Random rand;
+
+	// Bucket being filled, one coreset per tree level (null if empty)
+	private double[][] bucket;
+	private int bucketCount;
+	private ArrayList<WeightedPoints> levels;
+	private long numberPoints;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes empty coreset builder
+	 * @param numCentroids - integer number of centroids coreset should be good for
+	 * @param coresetSize - integer number of points in coreset
+	 * @param rand - Random for sampling
+	 */
+	public CoresetBuilder(int numCentroids, int coresetSize, Random rand)
+	{
+		this.numberCentroids = numCentroids;
+		this.coresetSize = coresetSize;
+		this.rand = rand;
+		bucket = new double[coresetSize][];
+		levels = new ArrayList<>();
+	}
+
+	///// STREAMING METHODS /////
+
+	/**
+	 * Adds a point to the stream
+	 * @param point - double[] point, kept by reference
+	 */
+	public void add(double[] point)
+	{
+		bucket[bucketCount++] = point;
+		numberPoints++;
+		if (bucketCount == coresetSize)
+		{
+			double[] ones = new double[coresetSize];
+			Arrays.fill(ones, 1);
+			carry(new WeightedPoints(bucket, ones), 0);
+			bucket = new double[coresetSize][];
+			bucketCount = 0;
+		}
+	}
+
+	/**
+	 * Puts a coreset into the tree at a level, merging and reducing upward while the level is taken
+	 * @param wp - WeightedPoints coreset
+	 * @param level - integer tree level
+	 */
+	private void carry(WeightedPoints wp, int level)
+	{
+		while (level < levels.size() && levels.get(level) != null)
+		{
+			wp = reduce(merge(levels.get(level), wp));
+			levels.set(level, null);
+			level++;
+		}
+		if (level == levels.size())
+			levels.add(wp);
+		else
+			levels.set(level, wp);
+	}
+
+	/**
+	 * Returns coreset of every point added so far, merging the partial bucket and every level
+	 * @return WeightedPoints
+	 */
+	public WeightedPoints build()
+	{
+		double[] ones = new double[bucketCount];
+		Arrays.fill(ones, 1);
+		WeightedPoints all = new WeightedPoints(Arrays.copyOf(bucket, bucketCount), ones);
+		for (WeightedPoints wp:levels)
+			if (wp != null)
+				all = merge(all, wp);
+		return reduce(all);
+	}
+
+	///// REDUCE METHODS /////
+
+	/**
+	 * Reduces weighted points to coreset size by sensitivity sampling, returning them as is if already small enough
+	 * @param wp - WeightedPoints to reduce
+	 * @return WeightedPoints
+	 */
+	private WeightedPoints reduce(WeightedPoints wp)
+	{
+		double[][] points = wp.getPoints();
+		double[] weights = wp.getWeights();
+		int n = points.length;
+		if (n <= coresetSize)
+			return wp;
+
+		// Rough clustering, then distance of each point to its rough centroid
+		double[][] centers = seed(points, weights, Math.min(numberCentroids, n), rand);
+		int[] labels = new int[n];
+		double[] dists = new double[n];
+		double[] clusterWeight = new double[centers.length];
+		double cost = 0;
+		for (int i=0; i<n; i++)
+		{
+			labels[i] = Vectors.closest(points[i], centers);
+			dists[i] = Vectors.squaredDistance(points[i], centers[labels[i]]);
+			clusterWeight[labels[i]] += weights[i];
+			cost += weights[i] * dists[i];
+		}
+
+		// Sensitivity of each point and running total for sampling
+		double[] cumulative = new double[n];
+		double total = 0;
+		for (int i=0; i<n; i++)
+		{
+			total += (cost > 0 ? weights[i] * dists[i] / cost : 0) + weights[i] / clusterWeight[labels[i]];
+			cumulative[i] = total;
+		}
+
+		// Sample, weighting each pick by original weight over expected picks
+		HashMap<Integer, Double> picked = new HashMap<>();
+		for (int s=0; s<coresetSize; s++)
+		{
+			int i = Arrays.binarySearch(cumulative, rand.nextDouble() * total);
+			if (i < 0)
+				i = Math.min(-i - 1, n - 1);
+			double p = (cumulative[i] - (i > 0 ? cumulative[i - 1] : 0)) / total;
+			picked.merge(i, weights[i] / (coresetSize * p), Double::sum);
+		}
+		double[][] sample = new double[picked.size()][];
+		double[] sampleWeights = new double[picked.size()];
+		int s = 0;
+		for (int i:picked.keySet())
+		{
+			sample[s] = points[i];
+			sampleWeights[s++] = picked.get(i);
+		}
+		return new WeightedPoints(sample, sampleWeights);
+	}
+
+	/**
+	 * Returns rough centers by weighted D squared seeding: each next center is a point picked with probability
+	 * in proportion to its weight times squared distance to the closest center so far
+	 * @param points - double[][] points
+	 * @param weights - double[] weight of each point
+	 * @param k - integer number of centers
+	 * @param rand - Random for picks
+	 * @return double[][]
+	 */
+	static double[][] seed(double[][] points, double[] weights, int k, Random rand)
+	{
+		int n = points.length;
+		double[][] centers = new double[k][];
+		double[] dists = new double[n];
+		Arrays.fill(dists, Double.MAX_VALUE);
+
+		// First center by weight alone
+		double total = 0;
+		for (double w:weights)
+			total += w;
+		int next = pick(weights, null, total, rand);
+		for (int c=0; c<k; c++)
+		{
+			centers[c] = points[next];
+			total = 0;
+			for (int i=0; i<n; i++)
+			{
+				dists[i] = Math.min(dists[i], Vectors.squaredDistance(points[i], centers[c]));
+				total += weights[i] * dists[i];
+			}
+			if (c + 1 < k)
+				next = total > 0 ? pick(weights, dists, total, rand) : rand.nextInt(n);
+		}
+		return centers;
+	}
+
+	/**
+	 * Picks an index with probability in proportion to weight times distance
+	 * @param weights - double[] weights
+	 * @param dists - double[] distances, null to use weights alone
+	 * @param total - double sum of weight times distance
+	 * @param rand - Random for pick
+	 * @return int
+	 */
+	private static int pick(double[] weights, double[] dists, double total, Random rand)
+	{
+		double target = rand.nextDouble() * total;
+		for (int i=0; i<weights.length; i++)
+		{
+			target -= weights[i] * (dists == null ? 1 : dists[i]);
+			if (target <= 0)
+				return i;
+		}
+		return weights.length - 1;
+	}
+
+	/**
+	 * Returns union of two sets of weighted points
+	 * @param a - WeightedPoints first set
+	 * @param b - WeightedPoints second set
+	 * @return WeightedPoints
+	 */
+	private static WeightedPoints merge(WeightedPoints a, WeightedPoints b)
+	{
+		double[][] points = Arrays.copyOf(a.getPoints(), a.size() + b.size());
+		double[] weights = Arrays.copyOf(a.getWeights(), a.size() + b.size());
+		System.arraycopy(b.getPoints(), 0, points, a.size(), b.size());
+		System.arraycopy(b.getWeights(), 0, weights, a.size(), b.size());
+		return new WeightedPoints(points, weights);
+	}
+
+	///// FILE METHODS /////
+
+	/**
+	 * Builds a coreset from a data file in one pass, one point per line with values split by whitespace
+	 * @param path - Path of data file
+	 * @param numCentroids - integer number of centroids coreset should be good for
+	 * @param coresetSize - integer number of points in coreset
+	 * @return WeightedPoints
+	 * @throws IOException if file cannot be read
+	 */
+	public static WeightedPoints fromFile(Path path, int numCentroids, int coresetSize) throws IOException
+	{
+		CoresetBuilder builder = new CoresetBuilder(numCentroids, coresetSize, new Random());
+		try (BufferedReader reader = Files.newBufferedReader(path))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				double[] point = parseLine(line);
+				if (point != null)
+					builder.add(point);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Labels every point of a data file with its closest centroid in one more pass
+	 * @param path - Path of data file
+	 * @param predictor - ClusterPredictor with centroids from the coreset
+	 * @return int[] - label of each point in file order
+	 * @throws IOException if file cannot be read
+	 */
+	public static int[] labelFile(Path path, ClusterPredictor predictor) throws IOException
+	{
+		int[] labels = new int[1024];
+		int n = 0;
+		try (BufferedReader reader = Files.newBufferedReader(path))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				double[] point = parseLine(line);
+				if (point == null)
+					continue;
+				if (n == labels.length)
+					labels = Arrays.copyOf(labels, labels.length * 2);
+				labels[n++] = predictor.predict(point, 0);
+			}
+		}
+		return Arrays.copyOf(labels, n);
+	}
+
+	/**
+	 * Parses a line of whitespace separated values
+	 * @param line - String line of file
+	 * @return double[] - values, null if line is blank
+	 */
+	private static double[] parseLine(String line)
+	{
+		line = line.trim();
+		if (line.isEmpty())
+			return null;
+		String[] parts = line.split("\\s+");
+		double[] point = new double[parts.length];
+		for (int j=0; j<parts.length; j++)
+			point[j] = Double.parseDouble(parts[j]);
+		return point;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns number of points added so far
+	 * @return long
+	 */
+	public long getNumberPoints()
+	{
+		return numberPoints;
+	}
+}
@@ -0,0 +1,128 @@
+package KMeans;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import Math.Matrix;
+
+/**
+ * DataFile writes data sets in the example data text layout, one point per line with values split by spaces,
+ * and in a binary layout that loads without parsing.
+ * Binary layout is a magic number, version, number of rows and number of columns as ints,
+ * then every value by rows as a big endian double, so value (i, j) starts at byte headerBytes + 8 (i cols + j).
+ * @author Nick Farrenkopf
+ */
+public class DataFile {
+
+	// Binary file header
+	static final int magic = 0x4B4D4444;
+	static final int version = 1;
+	public static final int headerBytes = 16;
+
+	///// TEXT METHODS /////
+
+	/**
+	 * Writes rows in the example data text layout
+	 * @param rows - double[][] data rows
+	 * @param path - Path to write to
+	 * @throws IOException if file cannot be written
+	 */
+	public static void writeText(double[][] rows, Path path) throws IOException
+	{
+		try (BufferedWriter out = Files.newBufferedWriter(path))
+		{
+			StringBuilder line = new StringBuilder();
+			for (double[] row:rows)
+			{
+				line.setLength(0);
+				for (int j=0; j<row.length; j++)
+				{
+					if (j > 0)
+						line.append(' ');
+					line.append(row[j]);
+				}
+				out.write(line.append("\r\n").toString());
+			}
+		}
+	}
+
+	///// BINARY METHODS /////
+
+	/**
+	 * Writes rows in the binary layout
+	 * @param rows - double[][] data rows
+	 * @param path - Path to write to
+	 * @throws IOException if file cannot be written
+	 */
+	public static void writeBinary(double[][] rows, Path path) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+		{
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(rows.length);
+			out.writeInt(rows.length == 0 ? 0 : rows[0].length);
+			for (double[] row:rows)
+				for (double v:row)
+					out.writeDouble(v);
+		}
+	}
+
+	/**
+	 * Reads a binary data file into a Matrix
+	 * @param path - Path of binary data file
+	 * @return Matrix
+	 * @throws IOException if file cannot be read or is not a binary data file
+	 */
+	public static Matrix readBinary(Path path) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			int[] shape = readHeader(in, path);
+			Matrix m = new Matrix(shape[0], shape[1]);
+			for (int i=0; i<shape[0]; i++)
+				for (int j=0; j<shape[1]; j++)
+					m.setValue(i, j, in.readDouble());
+			return m;
+		}
+	}
+
+	/**
+	 * Reads number of rows and columns of a binary data file without reading its values
+	 * @param path - Path of binary data file
+	 * @return int[] - number of rows and columns
+	 * @throws IOException if file cannot be read or is not a binary data file
+	 */
+	public static int[] readShape(Path path) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			return readHeader(in, path);
+		}
+	}
+
+	/**
+	 * Reads and checks header of a binary data file
+	 * @param in - DataInputStream at start of file
+	 * @param path - Path of file for error messages
+	 * @return int[] - number of rows and columns
+	 * @throws IOException if header is not a binary data header
+	 */
+	static int[] readHeader(DataInputStream in, Path path) throws IOException
+	{
+		if (in.readInt() != magic)
+			throw new IOException("Not a binary data file: " + path);
+		int v = in.readInt();
+		if (v != version)
+			throw new IOException("Unsupported binary data version " + v + ": " + path);
+		int rows = in.readInt();
+		int cols = in.readInt();
+		if (rows < 0 || cols < 0)
+			throw new IOException("Bad binary data shape " + rows + " by " + cols + ": " + path);
+		return new int[] {rows, cols};
+	}
+}
@@ -0,0 +1,160 @@
+package KMeans;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import FileThings.TextFile;
+import Math.Matrix;
+
+/**
+ * DatasetCache keeps recently loaded data files in memory so switching back to one does not read and parse it again.
+ * Entries are keyed by path and checked against the file's modification time, so an edited file is read again.
+ * Files are loaded on background threads and a file already loading is shared instead of read twice.
+ * When the total size of cached data passes the budget, least recently used files are dropped first.
+ * @author Nick Farrenkopf
+ */
+public class DatasetCache {
+
+	// Cached data in least recently used order, and files loading now
+	private LinkedHashMap<String, Entry> entries;
+	private HashMap<String, CompletableFuture<Matrix>> loading;
+
+	// Memory budget in bytes and bytes used
+	private long budget;
+	private long used;
+
+	// Background loading threads
+	private ExecutorService executor;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes empty cache
+	 * @param budgetBytes - long most bytes of data to keep
+	 * @param threads - integer number of background loading threads
+	 */
+	public DatasetCache(long budgetBytes, int threads)
+	{
+		budget = budgetBytes;
+		entries = new LinkedHashMap<>(16, 0.75f, true);
+		loading = new HashMap<>();
+		executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "dataset-loader");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	///// CACHE METHODS /////
+
+	/**
+	 * Returns data of a file, right away if cached and unchanged, otherwise once a background thread has read it
+	 * @param path - String path of data file
+	 * @return CompletableFuture<Matrix>
+	 */
+	public synchronized CompletableFuture<Matrix> load(String path)
+	{
+		// Cached and file unchanged
+		long modified = new File(path).lastModified();
+		Entry e = entries.get(path);
+		if (e != null && e.modified == modified)
+			return CompletableFuture.completedFuture(e.data);
+
+		// Already loading, or start loading
+		CompletableFuture<Matrix> future = loading.get(path);
+		if (future != null)
+			return future;
+		future = CompletableFuture.supplyAsync(() -> TextFile.readFileToMatrix(path, 0, Integer.MAX_VALUE), executor);
+		loading.put(path, future);
+		future.whenComplete((data, error) -> finish(path, modified, data));
+		return future;
+	}
+
+	/**
+	 * Starts loading a file in the background if it is not cached, so selecting it later is instant
+	 * @param path - String path of data file
+	 */
+	public void prefetch(String path)
+	{
+		load(path);
+	}
+
+	/**
+	 * Stores a finished load and drops least recently used data until under budget. The newest file is kept
+	 * even if it alone is over budget, since it is about to be shown.
+	 * @param path - String path of data file
+	 * @param modified - long modification time when load started
+	 * @param data - Matrix read, null if reading failed
+	 */
+	private synchronized void finish(String path, long modified, Matrix data)
+	{
+		loading.remove(path);
+		if (data == null)
+			return;
+		Entry old = entries.put(path, new Entry(modified, data));
+		if (old != null)
+			used -= old.bytes;
+		used += entries.get(path).bytes;
+
+		// Evict oldest first
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (used > budget && it.hasNext())
+		{
+			Map.Entry<String, Entry> oldest = it.next();
+			if (oldest.getKey().equals(path))
+				continue;
+			used -= oldest.getValue().bytes;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops every cached file
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		used = 0;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns bytes of data cached
+	 * @return long
+	 */
+	public synchronized long getBytesUsed()
+	{
+		return used;
+	}
+
+	/**
+	 * Returns number of files cached
+	 * @return int
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Entry is cached data with the modification time it was read at and its size
+	 */
+	private static class Entry {
+
+		private long modified;
+		private Matrix data;
+		private long bytes;
+
+		Entry(long modified, Matrix data)
+		{
+			this.modified = modified;
+			this.data = data;
+			bytes = (long) data.numRows() * data.numCols() * Double.BYTES;
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * DimensionReducer maps data with many columns down to a few before clustering, since every distance costs one
+ * step per column. Two maps are offered.
+ * A sparse random projection (Achlioptas) keeps every pairwise distance within a factor of 1 plus or minus epsilon
+ * with high probability once the new number of columns is at least jlDimension(n, epsilon), so the sum of squared
+ * distances of every clustering is kept within a factor of (1 plus or minus epsilon) squared. Two thirds of its
+ * entries are zero, so projecting costs a third of a dense map.
+ * Randomized PCA keeps the directions of largest variance, found by a few subspace iterations over the data in
+ * parallel blocks. Projecting onto the top pcaDimension(k, epsilon) components keeps the K Means cost within a
+ * factor of 1 plus epsilon, and getRetainedVariance tells how much spread was kept.
+ * Clustering runs on reduced data, then centroids are taken as means of the original rows of each cluster,
+ * so they are reported in the original space.
+ * @author Nick Farrenkopf
+ */
+public class DimensionReducer {
+
+	// Dimensions before and after
+	private int inputDimensions;
+	private int outputDimensions;
+
+	// Random projection, columns added and subtracted for each new column
+	private int[][] plus;
+	private int[][] minus;
+	private double scale;
+
+	// PCA, data mean and one component per row (null for random projection)
+	private double[] mean;
+	private double[][] components;
+	private double retainedVariance;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Initializes empty reducer, use randomProjection or pca to make one
+	 * @param inputDims - integer number of columns before
+	 * @param outputDims - integer number of columns after
+	 */
+	private DimensionReducer(int inputDims, int outputDims)
+	{
+		if (outputDims < 1 || outputDims > inputDims)
+			throw new IllegalArgumentException("Reduced dimensions must be between 1 and number of columns");
+		inputDimensions = inputDims;
+		outputDimensions = outputDims;
+		retainedVariance = Double.NaN;
+	}
+
+	/**
+	 * Returns sparse random projection. Each entry is plus or minus one with chance one sixth each, else zero.
+	 * @param inputDims - integer number of columns before
+	 * @param outputDims - integer number of columns after
+	 * @param rand - Random for entries
+	 * @return DimensionReducer
+	 */
+	public static DimensionReducer randomProjection(int inputDims, int outputDims, Random rand)
+	{
+		DimensionReducer r = new DimensionReducer(inputDims, outputDims);
+		r.plus = new int[outputDims][];
+		r.minus = new int[outputDims][];
+		r.scale = Math.sqrt(3.0 / outputDims);
+		for (int o=0; o<outputDims; o++)
+		{
+			ArrayList<Integer> p = new ArrayList<>();
+			ArrayList<Integer> m = new ArrayList<>();
+			for (int j=0; j<inputDims; j++)
+			{
+				int draw = rand.nextInt(6);
+				if (draw == 0)
+					p.add(j);
+				else if (draw == 1)
+					m.add(j);
+			}
+			r.plus[o] = p.stream().mapToInt(Integer::intValue).toArray();
+			r.minus[o] = m.stream().mapToInt(Integer::intValue).toArray();
+		}
+		return r;
+	}
+
+	/**
+	 * Returns randomized PCA of data keeping the directions of largest variance
+	 * @param matrixData - Matrix of data
+	 * @param outputDims - integer number of components to keep
+	 * @param rand - Random for starting subspace
+	 * @return DimensionReducer
+	 */
+	public static DimensionReducer pca(Matrix matrixData, int outputDims, Random rand)
+	{
+		DimensionReducer r = new DimensionReducer(matrixData.numCols(), outputDims);
+		double[][] data = Vectors.toArray(matrixData);
+		int d = r.inputDimensions;
+		int l = Math.min(d, outputDims + pcaOversample);
+
+		// Column means and total variance
+		r.mean = new double[d];
+		for (double[] row:data)
+			for (int j=0; j<d; j++)
+				r.mean[j] += row[j];
+		for (int j=0; j<d; j++)
+			r.mean[j] /= data.length;
+		double total = IntStream.range(0, data.length).parallel()
+				.mapToDouble(i -> Vectors.squaredDistance(data[i], r.mean)).sum();
+
+		// Subspace iteration from a random start, basis vectors as rows
+		double[][] basis = new double[l][d];
+		for (int c=0; c<l; c++)
+			for (int j=0; j<d; j++)
+				basis[c][j] = rand.nextGaussian();
+		orthonormalize(basis);
+		for (int it=0; it<=pcaPowerIterations; it++)
+		{
+			basis = r.covarianceTimes(data, basis, null);
+			orthonormalize(basis);
+		}
+
+		// Covariance within the subspace, then its eigenvectors largest first
+		double[][] small = new double[l][l];
+		r.covarianceTimes(data, basis, small);
+		double[][] vectors = new double[l][l];
+		double[] values = jacobi(small, vectors);
+		Integer[] order = new Integer[l];
+		for (int c=0; c<l; c++)
+			order[c] = c;
+		Arrays.sort(order, (a, b) -> Double.compare(values[b], values[a]));
+
+		// Components are the subspace basis turned by the top eigenvectors
+		r.components = new double[outputDims][d];
+		double kept = 0;
+		for (int o=0; o<outputDims; o++)
+		{
+			int e = order[o];
+			kept += values[e];
+			for (int c=0; c<l; c++)
+				for (int j=0; j<d; j++)
+					r.components[o][j] += vectors[c][e] * basis[c][j];
+		}
+		r.retainedVariance = total > 0 ? Math.min(1, kept / total) : 1;
+		return r;
+	}
+
+	///// PCA METHODS /////
+
+	/**
+	 * Multiplies data covariance by basis vectors over parallel blocks of rows. Each centered row is projected onto
+	 * the basis, then added back weighted by its projection.
+	 * @param data - double[][] data rows
+	 * @param basis - double[][] basis vectors as rows
+	 * @param small - double[][] basis by basis covariance to fill, null to skip
+	 * @return double[][] - covariance times each basis vector, as rows
+	 */
+	private double[][] covarianceTimes(double[][] data, double[][] basis, double[][] small)
+	{
+		int l = basis.length;
+		int d = inputDimensions;
+		int numBlocks = (data.length + reduceBlockSize - 1) / reduceBlockSize;
+		return IntStream.range(0, numBlocks).parallel().mapToObj(b -> {
+			double[][] part = new double[l][d];
+			double[] centered = new double[d];
+			double[] proj = new double[l];
+			double[][] smallPart = new double[small == null ? 0 : l][l];
+			int end = Math.min(data.length, (b + 1) * reduceBlockSize);
+			for (int i=b*reduceBlockSize; i<end; i++)
+			{
+				for (int j=0; j<d; j++)
+					centered[j] = data[i][j] - mean[j];
+				for (int c=0; c<l; c++)
+				{
+					proj[c] = 0;
+					for (int j=0; j<d; j++)
+						proj[c] += centered[j] * basis[c][j];
+				}
+				for (int c=0; c<l; c++)
+					for (int j=0; j<d; j++)
+						part[c][j] += proj[c] * centered[j];
+				for (int a=0; small!=null && a<l; a++)
+					for (int c=0; c<l; c++)
+						smallPart[a][c] += proj[a] * proj[c];
+			}
+
+			// Blocks add their small covariance one at a time
+			if (small != null)
+				synchronized (small)
+				{
+					for (int a=0; a<l; a++)
+						for (int c=0; c<l; c++)
+							small[a][c] += smallPart[a][c];
+				}
+			return part;
+		}).reduce((a, b) -> {
+			for (int c=0; c<l; c++)
+				for (int j=0; j<d; j++)
+					a[c][j] += b[c][j];
+			return a;
+		}).orElse(new double[l][d]);
+	}
+
+	/**
+	 * Makes rows orthonormal with modified Gram Schmidt, replacing a row that collapses with a unit vector
+	 * @param rows - double[][] vectors to orthonormalize in place
+	 */
+	private static void orthonormalize(double[][] rows)
+	{
+		for (int c=0; c<rows.length; c++)
+		{
+			for (int p=0; p<c; p++)
+			{
+				double dot = 0;
+				for (int j=0; j<rows[c].length; j++)
+					dot += rows[c][j] * rows[p][j];
+				for (int j=0; j<rows[c].length; j++)
+					rows[c][j] -= dot * rows[p][j];
+			}
+			double norm = Math.sqrt(Vectors.squaredDistance(rows[c], new double[rows[c].length]));
+			if (norm < epsilon)
+			{
+				Arrays.fill(rows[c], 0);
+				rows[c][c % rows[c].length] = 1;
+				continue;
+			}
+			for (int j=0; j<rows[c].length; j++)
+				rows[c][j] /= norm;
+		}
+	}
+
+	/**
+	 * Finds eigenvalues and eigenvectors of a small symmetric matrix with cyclic Jacobi rotations
+	 * @param a - double[][] symmetric matrix, overwritten
+	 * @param v - double[][] matrix to fill with eigenvectors as columns
+	 * @return double[] - eigenvalues
+	 */
+	private static double[] jacobi(double[][] a, double[][] v)
+	{
+		int l = a.length;
+		for (int i=0; i<l; i++)
+			v[i][i] = 1;
+		for (int sweep=0; sweep<maxJacobiSweeps; sweep++)
+		{
+			// Stop once off diagonal is negligible
+			double off = 0, diag = 0;
+			for (int p=0; p<l; p++)
+			{
+				diag += a[p][p] * a[p][p];
+				for (int q=p+1; q<l; q++)
+					off += a[p][q] * a[p][q];
+			}
+			if (off <= epsilon * epsilon * diag)
+				break;
+
+			// Rotate away each off diagonal entry
+			for (int p=0; p<l; p++)
+				for (int q=p+1; q<l; q++)
+				{
+					if (a[p][q] == 0)
+						continue;
+					double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+					double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+					if (theta == 0)
+						t = 1;
+					double cos = 1 / Math.sqrt(t * t + 1), sin = t * cos;
+					for (int k=0; k<l; k++)
+					{
+						double akp = a[k][p], akq = a[k][q];
+						a[k][p] = cos * akp - sin * akq;
+						a[k][q] = sin * akp + cos * akq;
+					}
+					for (int k=0; k<l; k++)
+					{
+						double apk = a[p][k], aqk = a[q][k];
+						a[p][k] = cos * apk - sin * aqk;
+						a[q][k] = sin * apk + cos * aqk;
+					}
+					for (int k=0; k<l; k++)
+					{
+						double vkp = v[k][p], vkq = v[k][q];
+						v[k][p] = cos * vkp - sin * vkq;
+						v[k][q] = sin * vkp + cos * vkq;
+					}
+				}
+		}
+		double[] values = new double[l];
+		for (int i=0; i<l; i++)
+			values[i] = a[i][i];
+		return values;
+	}
+
+	///// REDUCE METHODS /////
+
+	/**
+	 * Returns a point in reduced dimensions
+	 * @param point - double[] point in original dimensions
+	 * @return double[]
+	 */
+	public double[] transform(double[] point)
+	{
+		double[] out = new double[outputDimensions];
+		for (int o=0; o<outputDimensions; o++)
+			if (components == null)
+			{
+				double sum = 0;
+				for (int j:plus[o])
+					sum += point[j];
+				for (int j:minus[o])
+					sum -= point[j];
+				out[o] = scale * sum;
+			} else {
+				double sum = 0;
+				for (int j=0; j<inputDimensions; j++)
+					sum += (point[j] - mean[j]) * components[o][j];
+				out[o] = sum;
+			}
+		return out;
+	}
+
+	/**
+	 * Returns data in reduced dimensions, transforming blocks of rows in parallel
+	 * @param matrixData - Matrix of data
+	 * @return Matrix
+	 */
+	public Matrix transform(Matrix matrixData)
+	{
+		double[][] data = Vectors.toArray(matrixData);
+		double[][] out = new double[data.length][];
+		int numBlocks = (data.length + reduceBlockSize - 1) / reduceBlockSize;
+		IntStream.range(0, numBlocks).parallel().forEach(b -> {
+			int end = Math.min(data.length, (b + 1) * reduceBlockSize);
+			for (int i=b*reduceBlockSize; i<end; i++)
+				out[i] = transform(data[i]);
+		});
+		return Vectors.toMatrix(out);
+	}
+
+	/**
+	 * Clusters data in reduced dimensions, then returns K Means in the original space started at the means
+	 * of each reduced cluster's original rows and converged there, so the reduction only picks the start.
+	 * @param matrixData - Matrix of data in original dimensions
+	 * @param numCentroids - integer number of centroids
+	 * @param seed - long seed of restarts in reduced dimensions, and of restarts run on the returned model
+	 * @return KMeans
+	 */
+	public KMeans cluster(Matrix matrixData, int numCentroids, long seed)
+	{
+		// Run all restarts where distances are cheap
+		KMeans reduced = new KMeans(transform(matrixData), numCentroids);
+		reduced.setSeed(seed);
+		reduced.runAll();
+		
+		// Refine lifted centroids on full data
+		KMeans km = new KMeans(matrixData, liftCentroids(matrixData, reduced.getDataCentroidIndex(), numCentroids));
+		km.setSeed(seed);
+		km.converge();
+		return km;
+	}
+
+	/**
+	 * Returns centroids in original space as means of the original rows with each label. A cluster
+	 * with no rows keeps the first row so every centroid is a real point.
+	 * @param matrixData - Matrix of data in original dimensions
+	 * @param labels - int[] label of each row
+	 * @param numCentroids - integer number of centroids
+	 * @return Matrix
+	 */
+	public static Matrix liftCentroids(Matrix matrixData, int[] labels, int numCentroids)
+	{
+		double[][] sums = new double[numCentroids][matrixData.numCols()];
+		int[] counts = new int[numCentroids];
+		for (int i=0; i<matrixData.numRows(); i++)
+		{
+			for (int j=0; j<matrixData.numCols(); j++)
+				sums[labels[i]][j] += matrixData.getValue(i, j);
+			counts[labels[i]]++;
+		}
+		for (int c=0; c<numCentroids; c++)
+			for (int j=0; j<matrixData.numCols(); j++)
+				sums[c][j] = counts[c] > 0 ? sums[c][j] / counts[c] : matrixData.getValue(0, j);
+		return Vectors.toMatrix(sums);
+	}
+
+	///// BOUND METHODS /////
+
+	/**
+	 * Returns number of random projection dimensions that keeps all distances between n points within
+	 * 1 plus or minus epsilon (Johnson Lindenstrauss, Achlioptas)
+	 * @param n - long number of points
+	 * @param eps - double allowed distortion, between 0 and 1
+	 * @return int
+	 */
+	public static int jlDimension(long n, double eps)
+	{
+		return (int) Math.ceil(4 * Math.log(n) / (eps * eps / 2 - eps * eps * eps / 3));
+	}
+
+	/**
+	 * Returns number of PCA components that keeps K Means cost within 1 plus epsilon
+	 * @param numCentroids - integer number of centroids
+	 * @param eps - double allowed error
+	 * @return int
+	 */
+	public static int pcaDimension(int numCentroids, double eps)
+	{
+		return (int) Math.ceil(numCentroids / eps);
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns number of columns before reducing
+	 * @return int
+	 */
+	public int getInputDimensions()
+	{
+		return inputDimensions;
+	}
+
+	/**
+	 * Returns number of columns after reducing
+	 * @return int
+	 */
+	public int getOutputDimensions()
+	{
+		return outputDimensions;
+	}
+
+	/**
+	 * Returns fraction of total variance kept by PCA, NaN for random projection
+	 * @return double
+	 */
+	public double getRetainedVariance()
+	{
+		return retainedVariance;
+	}
+}
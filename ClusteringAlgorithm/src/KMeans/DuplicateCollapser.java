@@ -0,0 +1,204 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * DuplicateCollapser turns data with repeated rows into unique points weighted by how many rows they stand for.
+ * With no grid, rows collapse only if every value is exactly equal, found by hashing the values' bits, and the
+ * unique point is the first of its rows.
+ * With a grid, values are first rounded down to grid cells, so near duplicates collapse too and the
+ * unique point is the mean of its rows. Which unique point each row went to is kept, so labels found on the
+ * unique points can be expanded back to every original row.
+ * @author Nick Farrenkopf
+ */
+public class DuplicateCollapser {
+
+	// Unique points with counts, and unique index of each original row
+	private WeightedPoints unique;
+	private int[] rowToUnique;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Collapses duplicate rows of data on the default grid
+	 * @param data - Matrix of data
+	 */
+	public DuplicateCollapser(Matrix data)
+	{
+		this(data, duplicateGrid);
+	}
+
+	/**
+	 * Collapses duplicate rows of data
+	 * @param data - Matrix of data
+	 * @param grid - double grid cell size, 0 or less for exact duplicates only
+	 */
+	public DuplicateCollapser(Matrix data, double grid)
+	{
+		int n = data.numRows();
+		int d = data.numCols();
+		HashMap<RowKey, Integer> seen = new HashMap<>();
+		ArrayList<double[]> sums = new ArrayList<>();
+		ArrayList<Double> counts = new ArrayList<>();
+		rowToUnique = new int[n];
+
+		// Hash each row's bits or grid cells
+		for (int i=0; i<n; i++)
+		{
+			long[] key = new long[d];
+			for (int j=0; j<d; j++)
+				if (grid > 0)
+					key[j] = (long) Math.floor(data.getValue(i, j) / grid);
+				else
+					key[j] = Double.doubleToLongBits(data.getValue(i, j) + 0.0);
+			Integer u = seen.get(new RowKey(key));
+			if (u == null)
+			{
+				u = sums.size();
+				seen.put(new RowKey(key), u);
+				sums.add(new double[d]);
+				counts.add(0.0);
+			}
+
+			// Sum rows so near duplicates become their mean, exact duplicates keep their first row as is
+			double[] sum = sums.get(u);
+			if (grid > 0 || counts.get(u) == 0)
+				for (int j=0; j<d; j++)
+					sum[j] += data.getValue(i, j);
+			counts.set(u, counts.get(u) + 1);
+			rowToUnique[i] = u;
+		}
+
+		// Unique points are means of their rows on a grid
+		double[][] points = new double[sums.size()][];
+		double[] weights = new double[sums.size()];
+		for (int u=0; u<points.length; u++)
+		{
+			weights[u] = counts.get(u);
+			points[u] = sums.get(u);
+			if (grid > 0)
+				for (int j=0; j<d; j++)
+					points[u][j] /= weights[u];
+		}
+		unique = new WeightedPoints(points, weights);
+	}
+
+	///// COLLAPSE METHODS /////
+
+	/**
+	 * Returns number of distinct rows of data, rows with exactly equal values counting once. Data with no repeated
+	 * hash is counted without a key per row.
+	 * @param data - Matrix of data
+	 * @return int
+	 */
+	public static int countDistinct(Matrix data)
+	{
+		return mayRepeat(data) ? new DuplicateCollapser(data, 0).getUnique().size() : data.numRows();
+	}
+
+	/**
+	 * Returns whether data may have rows with exactly equal values. Each row is hashed to one long and the hashes
+	 * sorted, so only a long per row is made. Equal rows always hash equally, so false means every row is distinct,
+	 * while true can also come from rows that differ but share a hash.
+	 * @param data - Matrix of data
+	 * @return boolean
+	 */
+	public static boolean mayRepeat(Matrix data)
+	{
+		// Hash each row's bits
+		int n = data.numRows();
+		long[] hashes = new long[n];
+		long h;
+		for (int i=0; i<n; i++)
+		{
+			h = 1;
+			for (int j=0; j<data.numCols(); j++)
+				h = Vectors.hash(h, data.getValue(i, j));
+			hashes[i] = h;
+		}
+
+		// Rows with different hashes differ
+		Arrays.sort(hashes);
+		for (int i=1; i<n; i++)
+			if (hashes[i] == hashes[i - 1])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns label of every original row from labels of unique points
+	 * @param uniqueLabels - int[] label of each unique point
+	 * @return int[] - label of each original row
+	 */
+	public int[] expandLabels(int[] uniqueLabels)
+	{
+		int[] labels = new int[rowToUnique.length];
+		for (int i=0; i<labels.length; i++)
+			labels[i] = uniqueLabels[rowToUnique[i]];
+		return labels;
+	}
+
+	/**
+	 * Returns K Means on the unique points, each counting as its number of rows
+	 * @param numCentroids - integer number of centroids
+	 * @return KMeans
+	 * @throws IllegalArgumentException if there are fewer unique points than number of centroids
+	 */
+	public KMeans toKMeans(int numCentroids)
+	{
+		if (numCentroids > unique.size())
+			throw new IllegalArgumentException("Data has only " + unique.size()
+					+ " distinct points, fewer than number of centroids");
+		return unique.toKMeans(numCentroids);
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns unique points weighted by number of rows each stands for
+	 * @return WeightedPoints
+	 */
+	public WeightedPoints getUnique()
+	{
+		return unique;
+	}
+
+	/**
+	 * Returns index of unique point each original row went to
+	 * @return int[]
+	 */
+	public int[] getRowToUnique()
+	{
+		return rowToUnique;
+	}
+
+	/**
+	 * RowKey wraps a row's hashed values so equal rows are equal keys
+	 */
+	private static class RowKey {
+
+		private long[] values;
+		private int hash;
+
+		RowKey(long[] values)
+		{
+			this.values = values;
+			hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof RowKey && Arrays.equals(values, ((RowKey) o).values);
+		}
+	}
+}
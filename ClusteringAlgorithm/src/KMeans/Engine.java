@@ -0,0 +1,28 @@
+package KMeans;
+
+/**
+ * Engine is the way a pass of K Means finds closest centroids. Each assignment mode but auto runs the engine of the
+ * same name, while auto picks among all of them, including engines that cannot be asked for directly.
+ * @author Nick Farrenkopf
+ */
+public enum Engine {
+
+	// Engines of the assignment modes of the same name
+	STANDARD,
+	YINYANG,
+	PARTIAL,
+
+	// Rules out far centroids with distances over a one byte copy of the data, then checks the rest exactly.
+	// Only auto mode picks it, when its cost model says it pays, as it has not yet beaten partial when measured.
+	QUANTIZED;
+
+	/**
+	 * Returns engine an assignment mode runs
+	 * @param mode - Assignment mode other than auto
+	 * @return Engine
+	 */
+	public static Engine of(Assignment mode)
+	{
+		return valueOf(mode.name());
+	}
+}
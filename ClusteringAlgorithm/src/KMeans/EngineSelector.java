@@ -0,0 +1,370 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * EngineSelector picks how K Means runs from the shape of the data and what this machine can do.
+ * The first selector to run times a distance loop to find nanoseconds per dimension difference and per centroid
+ * check, and every engine's cost per pass is estimated from those. Skip rates start from the variance of each column
+ * and are replaced by the rates engines actually reach once they have run, so later choices are measured rather
+ * than guessed. Engines whose arrays would not fit in free heap are never chosen.
+ * Every choice is logged with its estimates so it can be checked afterwards.
+ * @author Nick Farrenkopf
+ */
+public class EngineSelector {
+
+	// Machine throughput, timed once per run of the program
+	private static double nanosPerTerm;
+	private static double nanosPerByte;
+	private static double nanosPerCheck;
+
+	// Fraction of full work each pruning engine does, modeled until it has run, negative if not yet known
+	static final int numberWorkFractions = 3;
+	private double partialWork;
+	private double yinyangWork;
+	private double quantizedWork;
+
+	// Fraction of zero values in a sample of data, negative until sampled
+	private double sparsity;
+
+	// Decisions made
+	private ArrayList<String> log;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes selector, timing this machine if no selector has yet
+	 */
+	public EngineSelector()
+	{
+		calibrate();
+		partialWork = -1;
+		yinyangWork = -1;
+		quantizedWork = -1;
+		sparsity = -1;
+		log = new ArrayList<>();
+	}
+
+	///// CALIBRATION METHODS /////
+
+	/**
+	 * Times closest centroid search over random points, once to warm up and once to measure,
+	 * then the same over byte copies of the points, then the same loop with a bound check in place of each distance
+	 */
+	private static synchronized void calibrate()
+	{
+		if (nanosPerTerm > 0)
+			return;
+
+		// Random points and centroids
+		Random rand = new Random(1);
+		double[][] points = new double[calibrationPoints][calibrationDimensions];
+		double[][] cents = new double[calibrationDimensions][calibrationDimensions];
+		for (double[] p:points)
+			for (int j=0; j<p.length; j++)
+				p[j] = rand.nextDouble();
+		for (double[] c:cents)
+			for (int j=0; j<c.length; j++)
+				c[j] = rand.nextDouble();
+		double[] bounds = new double[cents.length];
+		for (int c=0; c<bounds.length; c++)
+			bounds[c] = rand.nextDouble();
+
+		// Time distances, then checks
+		timeDistances(points, cents);
+		long checks = (long) points.length * cents.length;
+		nanosPerTerm = timeDistances(points, cents) / (checks * calibrationDimensions);
+		byte[][] pointBytes = toBytes(points);
+		byte[][] centBytes = toBytes(cents);
+		timeBytes(pointBytes, centBytes);
+		nanosPerByte = timeBytes(pointBytes, centBytes) / (checks * calibrationDimensions);
+		timeChecks(points, bounds);
+		nanosPerCheck = timeChecks(points, bounds) / checks;
+	}
+
+	/**
+	 * Returns nanoseconds spent finding each point's closest centroid over repeated sweeps lasting calibration millis
+	 * @param points - double[][] points
+	 * @param cents - double[][] centroids
+	 * @return double - nanoseconds per sweep
+	 */
+	private static double timeDistances(double[][] points, double[][] cents)
+	{
+		long start = System.nanoTime(), limit = start + calibrationMillis * 1000000L;
+		int sweeps = 0;
+		double sink = 0;
+		do {
+			for (double[] p:points)
+				sink += Vectors.squaredDistance(p, cents[Vectors.closest(p, cents)]);
+			sweeps++;
+		} while (System.nanoTime() < limit);
+		return sink < 0 ? 0 : (double) (System.nanoTime() - start) / sweeps;
+	}
+
+	/**
+	 * Returns nanoseconds spent on distances from each byte point to every byte centroid, weighting each column's
+	 * squared difference by its squared step as the quantized engine does, over repeated sweeps lasting calibration millis
+	 * @param points - byte[][] points
+	 * @param cents - byte[][] centroids
+	 * @return double - nanoseconds per sweep
+	 */
+	private static double timeBytes(byte[][] points, byte[][] cents)
+	{
+		long start = System.nanoTime(), limit = start + calibrationMillis * 1000000L;
+		int sweeps = 0;
+		double sink = 0;
+		double[] weight = new double[points[0].length];
+		Arrays.fill(weight, 1.0 / (255 * 255));
+		do {
+			for (byte[] p:points)
+				for (byte[] c:cents)
+				{
+					double sum = 0;
+					int diff;
+					for (int j=0; j<p.length; j++)
+					{
+						diff = p[j] - c[j];
+						sum += weight[j] * (diff * diff);
+					}
+					sink += sum;
+				}
+			sweeps++;
+		} while (System.nanoTime() < limit);
+		return sink < 0 ? 0 : (double) (System.nanoTime() - start) / sweeps;
+	}
+
+	/**
+	 * Returns byte copies of values between zero and one
+	 * @param rows - double[][] values
+	 * @return byte[][]
+	 */
+	private static byte[][] toBytes(double[][] rows)
+	{
+		byte[][] b = new byte[rows.length][];
+		for (int i=0; i<rows.length; i++)
+		{
+			b[i] = new byte[rows[i].length];
+			for (int j=0; j<b[i].length; j++)
+				b[i][j] = (byte) (Math.round(rows[i][j] * 255) - 128);
+		}
+		return b;
+	}
+
+	/**
+	 * Returns nanoseconds spent comparing a value of each point against every bound, over repeated sweeps
+	 * lasting calibration millis
+	 * @param points - double[][] points
+	 * @param bounds - double[] bounds
+	 * @return double - nanoseconds per sweep
+	 */
+	private static double timeChecks(double[][] points, double[] bounds)
+	{
+		long start = System.nanoTime(), limit = start + calibrationMillis * 1000000L;
+		int sweeps = 0, passed = 0;
+		do {
+			for (double[] p:points)
+				for (double b:bounds)
+					if (p[0] > b)
+						passed++;
+			sweeps++;
+		} while (System.nanoTime() < limit);
+		return passed < 0 ? 0 : (double) (System.nanoTime() - start) / sweeps;
+	}
+
+	///// CHOICE METHODS /////
+
+	/**
+	 * Returns the assignment engine with the lowest estimated cost per pass that fits in free heap, and logs why
+	 * @param data - Matrix of data
+	 * @param k - integer number of centroids
+	 * @param stats - ColumnStats of data, for how variance is spread over columns
+	 * @param changed - double fraction of labels that changed in last pass, 1 before the first
+	 * @return Engine
+	 */
+	public Engine choose(Matrix data, int k, ColumnStats stats, double changed)
+	{
+		// Zeros can be skipped by no engine, but sparse data spreads variance over few columns
+		int n = data.numRows(), d = data.numCols();
+		if (sparsity < 0)
+			sparsity = sparsity(data);
+
+		// Cost of one centroid, in full and after skipping
+		double full = d * nanosPerTerm + nanosPerCheck;
+		int groups = Math.max(1, Math.min(k, k / yinyangGroupSize));
+		double partial = partialWork >= 0 ? partialWork : modeledPartialWork(stats, k);
+		double yinyang = Math.min(1, (yinyangWork >= 0 ? yinyangWork : yinyangRecheckFraction) + changed);
+		double quantized = quantizedWork >= 0 ? quantizedWork : Math.min(1, quantizedShortlist / k);
+
+		// Cost of a pass for each engine in milliseconds
+		double[] cost = new double[4];
+		cost[0] = (double) n * k * full;
+		cost[1] = (double) n * k * (d * partial * nanosPerTerm + 2 * nanosPerCheck);
+		cost[2] = (double) n * (2 * groups * nanosPerCheck + yinyang * k * full);
+		// Byte sums are given up past the bound as partial distance gives up double sums
+		cost[3] = (double) n * k * (d * partial * nanosPerByte + 2 * nanosPerCheck + quantized * full);
+		for (int e=0; e<cost.length; e++)
+			cost[e] /= 1000000;
+
+		// Pruning engines copy data to arrays and keep bounds, skip them if that will not fit
+		double[] bytes = {0, 8.0 * n * (d + 2), 8.0 * n * (d + groups + 1), n * (d + 24.0)};
+		double free = freeHeap() * autoHeapFraction;
+		Engine[] engines = {Engine.STANDARD, Engine.PARTIAL, Engine.YINYANG, Engine.QUANTIZED};
+		int best = 0;
+		String unfit = "";
+		for (int e=1; e<engines.length; e++)
+			if (bytes[e] > free)
+				unfit += ", " + engines[e] + " does not fit heap";
+			else if (cost[e] < cost[best])
+				best = e;
+
+		// Log choice and its estimates
+		record(String.format("%s for n=%d d=%d k=%d, %.0f%% labels changing, %.0f%% zeros: ms per pass standard %.2f,"
+				+ " partial %.2f, yinyang %.2f, quantized %.2f%s", engines[best], n, d, k, 100 * changed, 100 * sparsity,
+				cost[0], cost[1], cost[2], cost[3], unfit));
+		return engines[best];
+	}
+
+	/**
+	 * Returns estimated fraction of dimension differences partial distance sums. The closest centroid needs every
+	 * dimension, while farther ones are given up once the dimensions holding the variance share are summed.
+	 * @param stats - ColumnStats of data
+	 * @param k - integer number of centroids
+	 * @return double
+	 */
+	private static double modeledPartialWork(ColumnStats stats, int k)
+	{
+		// Dimensions in order of variance until share is reached
+		int d = stats.getNumberColumns();
+		int[] order = stats.getVarianceOrder();
+		double total = 0, sum = 0;
+		for (int j=0; j<d; j++)
+			total += stats.getVariance(j);
+		int needed = 0;
+		while (needed < d && (total <= 0 || sum < partialVarianceShare * total))
+			sum += stats.getVariance(order[needed++]);
+		return (1 + (k - 1) * (double) needed / d) / k;
+	}
+
+	/**
+	 * Records work fraction an engine reached, so later choices use it instead of the model
+	 * @param engine - Engine that ran
+	 * @param pruningRate - double fraction of work it skipped in its last pass
+	 */
+	public void observe(Engine engine, double pruningRate)
+	{
+		if (engine == Engine.PARTIAL)
+			partialWork = 1 - pruningRate;
+		else if (engine == Engine.YINYANG)
+			yinyangWork = 1 - pruningRate;
+		else if (engine == Engine.QUANTIZED)
+			quantizedWork = 1 - pruningRate;
+	}
+
+	/**
+	 * Returns work fractions engines reached so far, negative if not yet known, so they can be checkpointed
+	 * @return double[] - partial, yinyang and quantized work fractions
+	 */
+	synchronized double[] getWorkFractions()
+	{
+		return new double[] {partialWork, yinyangWork, quantizedWork};
+	}
+
+	/**
+	 * Sets work fractions engines reached, as given by get work fractions of a checkpointed run
+	 * @param work - double[] partial, yinyang and quantized work fractions
+	 */
+	synchronized void setWorkFractions(double[] work)
+	{
+		partialWork = work[0];
+		yinyangWork = work[1];
+		quantizedWork = work[2];
+	}
+
+	/**
+	 * Returns number of threads worth using for a pass, at most one per block and one per processor
+	 * @param n - long number of data points
+	 * @return int
+	 */
+	public int chooseThreads(long n)
+	{
+		int threads = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+				(n + offHeapBlockSize - 1) / offHeapBlockSize));
+		record("threads " + threads + " for n=" + n);
+		return threads;
+	}
+
+	/**
+	 * Returns whether data should be kept off heap, which is when the copies K Means keeps on heap would not fit
+	 * @param n - long number of data points
+	 * @param d - integer number of dimensions
+	 * @return boolean
+	 */
+	public boolean chooseOffHeap(long n, int d)
+	{
+		double bytes = 8.0 * n * d * autoHeapCopies;
+		double free = freeHeap() * autoHeapFraction;
+		boolean offHeap = bytes > free;
+		record(String.format("%s for n=%d d=%d: %.0f MB on heap, %.0f MB free", offHeap ? "off heap" : "on heap",
+				n, d, bytes / (1 << 20), free / (1 << 20)));
+		return offHeap;
+	}
+
+	/**
+	 * Returns bytes the heap can still grow by
+	 * @return long
+	 */
+	private static long freeHeap()
+	{
+		Runtime rt = Runtime.getRuntime();
+		return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+	}
+
+	/**
+	 * Returns fraction of zero values in evenly spaced sample rows
+	 * @param data - Matrix of data
+	 * @return double
+	 */
+	private static double sparsity(Matrix data)
+	{
+		int step = Math.max(1, data.numRows() / autoSampleRows);
+		long zero = 0, total = 0;
+		for (int i=0; i<data.numRows(); i+=step)
+			for (int j=0; j<data.numCols(); j++, total++)
+				if (data.getValue(i, j) == 0)
+					zero++;
+		return total == 0 ? 0 : (double) zero / total;
+	}
+
+	///// LOG METHODS /////
+
+	/**
+	 * Adds a decision to the log
+	 * @param line - String decision
+	 */
+	private synchronized void record(String line)
+	{
+		log.add(line);
+	}
+
+	/**
+	 * Returns decisions made so far, oldest first
+	 * @return ArrayList<String>
+	 */
+	public synchronized ArrayList<String> getLog()
+	{
+		return new ArrayList<>(log);
+	}
+
+	/**
+	 * Returns calibrated nanoseconds per dimension difference
+	 * @return double
+	 */
+	public static double getNanosPerTerm()
+	{
+		calibrate();
+		return nanosPerTerm;
+	}
+}
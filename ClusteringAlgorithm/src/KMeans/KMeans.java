@@ -1,6 +1,13 @@
 package KMeans;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
 import Math.Matrix;
 import static KMeans.Constants.*;
 
@@ -14,14 +21,79 @@ import static KMeans.Constants.*;
  */
 public class KMeans {
 
-	// Hold data vectors
+	// Hold data vectors, and weight of each vector (null if all weigh one)
 	private Matrix data;
+	private double[] weights;
 	private int[] dataCentroidIndex;
 	
 	// Centroid variables
 	private int numberCentroids;
 	private Matrix centroids;
 	private ArrayList<Matrix> oldCentroids;
+	
+	// Sum and count of points belonging to each centroid, kept up to date as labels change
+	private double[][] clusterSums;
+	private double[] clusterCounts;
+	
+	// Number of data points, which appending may leave fewer than rows kept in data and per point arrays
+	private int numberRows;
+	
+	// Hash of data points and weights in row order, kept up to date as points are appended
+	private long fingerprint;
+	
+	// Distance to closest centroid is at most upper bound, distance to any other centroid at least lower bound.
+	// Bounds are kept relative to how far centroids moved since the last full pass, so moving them touches no points.
+	private double[] upperBounds;
+	private double[] lowerBounds;
+	private double[] centroidDrift;
+	private double maxDrift;
+	
+	// Points by how far centroids can move before their bounds cross, only kept while appending (null otherwise)
+	private BoundHeap boundHeap;
+	
+	// Sum of squared distances from each point to its closest centroid
+	private double inertia;
+	
+	// Weighted sum of squared lengths of each centroid's points, only kept while appending (null otherwise)
+	private double[] clusterSquares;
+	
+	// Restart variables, listener told index of each finished restart (null if none)
+	private int stableRestarts;
+	private boolean earlyAbandon;
+	private IntConsumer restartListener;
+	
+	// Seed each restart's random stream is split from, and least milliseconds between checkpoints
+	private long seed;
+	private long checkpointInterval;
+	
+	// Progress of converge, kept so a checkpoint can pick it up part way
+	private ConvergeProgress progress;
+	
+	// How closest centroids are found, with state for modes that keep it between iterations
+	private Assignment assignment;
+	private YinyangAssigner yinyang;
+	private PartialDistanceAssigner partial;
+	private QuantizedAssigner quantized;
+	
+	// Engine in use, which differs from assignment in auto mode (null until chosen), and selector choosing it
+	private Engine engine;
+	private EngineSelector selector;
+	private boolean reconsidered;
+	
+	// Number of labels changed in last pass
+	private int numberChanged;
+	
+	// Column stats found when data was loaded, null if not given
+	private ColumnStats stats;
+	
+	// Proposes longer centroid updates when acceleration is on, null otherwise
+	private OverRelaxation accelerator;
+	
+	// Exporter the final pass of run all streams results to, null if none
+	private ResultExporter exporter;
+	
+	// Number of passes over data to find closest centroids
+	private int numberPasses;
 
 	///// CONSTRUCTORS /////
 
@@ -32,19 +104,84 @@ public class KMeans {
 	 * @param numCentroids - integer number of centroids
 	 */
 	public KMeans(Matrix matrixData, int numCentroids)
+	{
+		this(matrixData, null, numCentroids, null, new Random());
+	}
+	
+	/**
+	 * Initializes a K Means variable given a data set where each point counts as its weight,
+	 * such as a coreset or points with duplicates collapsed.
+	 * @param matrixData - Matrix of data
+	 * @param pointWeights - double[] weight of each point
+	 * @param numCentroids - integer number of centroids
+	 */
+	public KMeans(Matrix matrixData, double[] pointWeights, int numCentroids)
+	{
+		this(matrixData, pointWeights, numCentroids, null, new Random());
+	}
+	
+	/**
+	 * Initializes a K Means variable picking starting centroids from the given random stream,
+	 * so the same stream on the same data starts the same way.
+	 * @param matrixData - Matrix of data
+	 * @param pointWeights - double[] weight of each point, null if all weigh one
+	 * @param numCentroids - integer number of centroids
+	 * @param rand - Random to pick starting centroids with
+	 */
+	public KMeans(Matrix matrixData, double[] pointWeights, int numCentroids, Random rand)
+	{
+		this(matrixData, pointWeights, numCentroids, null, rand);
+	}
+	
+	/**
+	 * Initializes a K Means variable given a data set and starting centroids, such as from another clustering.
+	 * It then updates each data point's closest centroid.
+	 * @param matrixData - Matrix of data
+	 * @param initialCentroids - Matrix of starting centroids
+	 */
+	public KMeans(Matrix matrixData, Matrix initialCentroids)
+	{
+		this(matrixData, null, initialCentroids.numRows(), initialCentroids, null);
+	}
+	
+	/**
+	 * Initializes a K Means variable, starting from given centroids or random ones if null
+	 * @param matrixData - Matrix of data
+	 * @param pointWeights - double[] weight of each point, null if all weigh one
+	 * @param numCentroids - integer number of centroids
+	 * @param initialCentroids - Matrix of starting centroids, null for random
+	 * @param rand - Random to pick starting centroids with, unused if they are given
+	 */
+	private KMeans(Matrix matrixData, double[] pointWeights, int numCentroids, Matrix initialCentroids, Random rand)
 	{
 		// Set data
+		if (numCentroids < 1 || numCentroids > matrixData.numRows())
+			throw new IllegalArgumentException("Number of centroids must be between 1 and number of data points");
 		data = matrixData.copy();
+		numberRows = matrixData.numRows();
+		weights = pointWeights == null ? null : pointWeights.clone();
+		addFingerprint(0, numberRows);
+		if (initialCentroids == null && weights != null && positiveWeights() < numCentroids)
+			throw new IllegalArgumentException("Number of centroids must be at most number of points with positive weight");
 		numberCentroids = numCentroids;
+		stableRestarts = initialStableRestarts;
+		seed = new Random().nextLong();
+		checkpointInterval = Constants.checkpointInterval;
+		assignment = Assignment.STANDARD;
+		engine = Engine.STANDARD;
 
 		// Initialize centroid index to 0
-		dataCentroidIndex = new int[matrixData.numRows()];
-		for (int i=0; i<matrixData.numRows(); i++)
-			dataCentroidIndex[i] = 0;
+		upperBounds = new double[matrixData.numRows()];
+		lowerBounds = new double[matrixData.numRows()];
+		resetClusters();
 
 		// Initialize centroids
-		randomizeCentroids();
+		if (initialCentroids == null)
+			randomizeCentroids(rand);
+		else
+			centroids = initialCentroids.copy();
 		updateClosestCentroid();
+		progress = new ConvergeProgress(inertia);
 		
 		// Initialize list containing all centroids
 		oldCentroids = new ArrayList<>();
@@ -54,20 +191,63 @@ public class KMeans {
 	///// K MEANS METHODS /////
 
 	/**
-	 * Initialize all centroids to a random data point.
+	 * Puts every point back in the first centroid's sum, so sums are built again from nothing on the next pass
+	 * and depend only on the centroids, not on the labels they had before
+	 */
+	private void resetClusters()
+	{
+		// All points start in the first centroid's sum
+		dataCentroidIndex = new int[data.numRows()];
+		clusterSums = new double[numberCentroids][data.numCols()];
+		clusterCounts = new double[numberCentroids];
+		clusterSquares = null;
+		boundHeap = null;
+		for (int i=0; i<numberRows; i++)
+			addToCluster(i, 0, 1);
+		yinyang = null;
+		partial = null;
+		quantized = null;
+	}
+
+	/**
+	 * Initialize all centroids to a random data point. Weighted points are picked in proportion to their weight,
+	 * so a point standing in for many duplicates is as likely as all of them together.
 	 */
 	public void randomizeCentroids()
 	{
-		// Place holder variables
+		randomizeCentroids(new Random());
+	}
+	
+	/**
+	 * Initialize all centroids to a random data point drawn from the given random stream
+	 * @param rand - Random to pick with
+	 */
+	private void randomizeCentroids(Random rand)
+	{
+		// Place holder variables, set keeps contains fast for many centroids
 		int newIndex;
 		ArrayList<Integer> indexes = new ArrayList<>();
-		Random rand = new Random();
+		HashSet<Integer> chosen = new HashSet<>();
+		
+		// Running total of weights for weighted picks
+		double[] cumulative = null;
+		if (weights != null)
+		{
+			cumulative = new double[numberRows];
+			for (int i=0; i<numberRows; i++)
+				cumulative[i] = (i > 0 ? cumulative[i - 1] : 0) + weights[i];
+		}
 
 		// Choose random number until not in indexes, then add to indexes
 		while (indexes.size() != numberCentroids)
 		{
-			newIndex = rand.nextInt(data.numRows());
-			if (!indexes.contains(newIndex))
+			if (cumulative == null)
+				newIndex = rand.nextInt(numberRows);
+			else {
+				newIndex = Arrays.binarySearch(cumulative, rand.nextDouble() * cumulative[cumulative.length - 1]);
+				newIndex = Math.min(newIndex < 0 ? -newIndex - 1 : newIndex, numberRows - 1);
+			}
+			if (chosen.add(newIndex))
 				indexes.add(newIndex);
 		}	
 
@@ -79,64 +259,429 @@ public class KMeans {
 	
 	/**
 	 * Iterates through the data set and finds the closest centroid, setting it in data centroid index.
+	 * The inertia is summed along the way since each point's minimum distance is already known.
 	 */
 	public void updateClosestCentroid()
 	{
-		// Holds index of minimum centroid and distance
-		int minIndex;
-		double minDist, newDist;
-		
 		// Iterate through all the data points
-		for (int i=0; i<data.numRows(); i++)
+		inertia = 0;
+		numberPasses++;
+		resetDrift();
+		if (assignment == Assignment.AUTO)
+			chooseEngine();
+		numberChanged = 0;
+		if (engine == Engine.YINYANG)
+		{
+			updateYinyangCentroid();
+			return;
+		}
+		if (engine == Engine.PARTIAL)
+		{
+			updatePartialCentroid();
+			return;
+		}
+		if (engine == Engine.QUANTIZED)
+		{
+			updateQuantizedCentroid();
+			return;
+		}
+		if (numberCentroids < indexMinCentroids)
 		{
-			// Sets the current minimum value for closest centroid
-			minIndex = dataCentroidIndex[i];
-			minDist = data.getRowVector(i).minus(centroids.getRowVector(minIndex)).squareSum();
+			for (int i=0; i<numberRows; i++)
+				inertia += weight(i) * assignClosestCentroid(i);
+			return;
+		}
+		
+		// Many centroids, so rebuild index on moved centroids and search it instead
+		CentroidIndex index = new CentroidIndex(Vectors.toArray(centroids));
+		double[] point = new double[data.numCols()];
+		double[] second = new double[1];
+		for (int i=0; i<numberRows; i++)
+		{
+			for (int j=0; j<point.length; j++)
+				point[j] = data.getValue(i, j);
+			inertia += weight(i) * assignIndexedCentroid(i, index.closest(point, 0, second), second[0]);
+		}
+	}
+	
+	/**
+	 * Picks the engine in auto mode. The first pass picks for labels that all change, then once few labels change
+	 * the selector picks again with the pruning rate the engine reached, which is when bounds start to pay off.
+	 */
+	private void chooseEngine()
+	{
+		// Only first pass and first settled pass choose
+		double changed = (double) numberChanged / numberRows;
+		if (engine != null && (reconsidered || changed >= autoSwitchFraction))
+			return;
+		if (engine != null)
+		{
+			selector.observe(engine, getPruningRate());
+			reconsidered = true;
+		} else
+			changed = 1;
+		
+		// Switch, dropping state of old engine
+		Engine next = selector.choose(getData(), numberCentroids, stats, changed);
+		if (next != engine)
+		{
+			engine = next;
+			yinyang = null;
+			partial = null;
+			quantized = null;
+		}
+	}
+	
+	/**
+	 * Finds closest centroid of a single data point, moving the point between cluster sums if it changes.
+	 * Also resets the point's bounds to its distance to the closest and second closest centroid.
+	 * @param i - integer index of data point
+	 * @return double - squared distance to closest centroid
+	 */
+	private double assignClosestCentroid(int i)
+	{
+		// Sets the current minimum value for closest centroid
+		int oldIndex = dataCentroidIndex[i];
+		int minIndex = oldIndex;
+		double minDist = distance(i, minIndex);
+		double secondDist = Double.MAX_VALUE;
+		double newDist;
+		
+		// Iterate through centroids to find minimum distance
+		for (int j=0; j<numberCentroids; j++)
+		{
+			if (j == oldIndex)
+				continue;
 			
-			// Iterate through centroids to find minimum distance
-			for (int j=0; j<numberCentroids; j++)
+			// If new distance is smaller, update closest centroid
+			newDist = distance(i, j);
+			if (newDist < minDist)
 			{
-				// If new distance is smaller, update closest centroid
-				newDist = data.getRowVector(i).minus(centroids.getRowVector(j)).squareSum();
-				if (newDist < minDist)
-				{
-					dataCentroidIndex[i] = j;
-					minDist = newDist;
-				}
+				secondDist = minDist;
+				minIndex = j;
+				minDist = newDist;
+			} else if (newDist < secondDist)
+				secondDist = newDist;
+		}
+		
+		// Move point to new cluster and set bounds
+		if (minIndex != oldIndex)
+		{
+			addToCluster(i, oldIndex, -1);
+			numberChanged++;
+			addToCluster(i, minIndex, 1);
+			dataCentroidIndex[i] = minIndex;
+		}
+		setBounds(i, Math.sqrt(minDist), Math.sqrt(secondDist));
+		return minDist;
+	}
+	
+	/**
+	 * Finds closest centroid of each point in order, as the standard engine does, handing each label and distance
+	 * to the exporter as soon as it is found so files are written while the pass runs.
+	 * Engines that keep their own state start again on the next pass.
+	 * @param out - ResultExporter to stream to
+	 */
+	private void exportClosestCentroid(ResultExporter out)
+	{
+		// Index only pays for many centroids
+		inertia = 0;
+		numberPasses++;
+		numberChanged = 0;
+		resetDrift();
+		yinyang = null;
+		partial = null;
+		quantized = null;
+		CentroidIndex index = numberCentroids < indexMinCentroids ? null : new CentroidIndex(Vectors.toArray(centroids));
+		double[] point = new double[data.numCols()];
+		double[] second = new double[1];
+		double dist;
+		for (int i=0; i<numberRows; i++)
+		{
+			if (index == null)
+				dist = assignClosestCentroid(i);
+			else
+			{
+				for (int j=0; j<point.length; j++)
+					point[j] = data.getValue(i, j);
+				dist = assignIndexedCentroid(i, index.closest(point, 0, second), second[0]);
 			}
+			inertia += weight(i) * dist;
+			out.writePoint(dataCentroidIndex[i], Math.sqrt(dist));
 		}
 	}
 	
 	/**
-	 * Iterates through data, summing position if it belongs to a certain centroid.
-	 * Average is then found by dividing by counter.
+	 * Finds closest centroids with the Yinyang assigner, which keeps its own bounds between iterations,
+	 * then moves changed points between cluster sums. Inertia needs each point's exact distance,
+	 * which costs one distance per point rather than one per centroid. The lower bound is the smallest group bound.
 	 */
-	public void updateCentroidMeans()
+	private void updateYinyangCentroid()
 	{
-		// Initializes sum and count variables
-		Matrix sum = new Matrix(centroids.numRows(), centroids.numCols(), 0);
-		double[] count = new double[centroids.numRows()];
+		// Assigner copies data to arrays once
+		if (yinyang == null)
+			yinyang = new YinyangAssigner(Vectors.toArray(getData()));
+		int[] labels = dataCentroidIndex.clone();
+		yinyang.assign(Vectors.toArray(centroids), labels);
 		
-		// Iterate through data
-		for (int i=0; i<data.numRows(); i++)
+		// Move changed points and sum inertia
+		for (int i=0; i<numberRows; i++)
 		{
-			// Set variables to zero
-			int index = dataCentroidIndex[i];
-			
-			// Add data vector to sum
-			sum.setRowVector(index, sum.getRowVector(index).add(data.getRowVector(i)));
-			
-			// Increase counter
-			count[index]++;
+			if (labels[i] != dataCentroidIndex[i])
+			{
+				addToCluster(i, dataCentroidIndex[i], -1);
+				numberChanged++;
+				addToCluster(i, labels[i], 1);
+				dataCentroidIndex[i] = labels[i];
+			}
+			double dist = distance(i, labels[i]);
+			setBounds(i, Math.sqrt(dist), yinyang.getLowerBound(i));
+			inertia += weight(i) * dist;
 		}
-
-		// Find average of sum rows and set to centroids
-		for (int i=0; i<centroids.numRows(); i++)
-			if (count[i] != 0)
-				centroids.setRowVector(i, sum.getRowVector(i).mult(1 / count[i]));
+	}
+	
+	/**
+	 * Finds closest centroids with the partial distance assigner, then moves changed points between cluster sums.
+	 * The assigner gives each point's exact distance and a lower bound on the rest, so bounds stay usable.
+	 */
+	private void updatePartialCentroid()
+	{
+		// Assigner copies data to arrays and orders dimensions once
+		if (partial == null)
+			partial = stats == null ? new PartialDistanceAssigner(Vectors.toArray(getData()))
+					: new PartialDistanceAssigner(Vectors.toArray(getData()), stats.getVarianceOrder());
+		int[] labels = dataCentroidIndex.clone();
+		double[] minDists = new double[numberRows];
+		double[] secondDists = new double[numberRows];
+		partial.assign(Vectors.toArray(centroids), labels, minDists, secondDists);
+		applyLabels(labels, minDists, secondDists);
+	}
+	
+	/**
+	 * Finds closest centroids with the quantized assigner, then moves changed points between cluster sums.
+	 * The assigner gives each point's exact distance and a lower bound on the rest, so bounds stay usable.
+	 */
+	private void updateQuantizedCentroid()
+	{
+		// Assigner copies data to bytes in variance order once, reading exact distances from data itself.
+		// Only auto mode runs it, which always has column stats
+		if (quantized == null)
+			quantized = new QuantizedAssigner(data, numberRows, stats.getVarianceOrder());
+		int[] labels = dataCentroidIndex.clone();
+		double[] minDists = new double[numberRows];
+		double[] secondDists = new double[numberRows];
+		quantized.assign(Vectors.toArray(centroids), labels, minDists, secondDists);
+		applyLabels(labels, minDists, secondDists);
+	}
+	
+	/**
+	 * Moves points whose label changed between cluster sums, sets bounds and sums inertia
+	 * @param labels - int[] new label of each point
+	 * @param minDists - double[] squared distance of each point to its closest centroid
+	 * @param secondDists - double[] lower bound on squared distance of each point to any other centroid
+	 */
+	private void applyLabels(int[] labels, double[] minDists, double[] secondDists)
+	{
+		// Move changed points and sum inertia
+		for (int i=0; i<numberRows; i++)
+		{
+			if (labels[i] != dataCentroidIndex[i])
+			{
+				addToCluster(i, dataCentroidIndex[i], -1);
+				numberChanged++;
+				addToCluster(i, labels[i], 1);
+				dataCentroidIndex[i] = labels[i];
+			}
+			setBounds(i, Math.sqrt(minDists[i]), Math.sqrt(secondDists[i]));
+			inertia += weight(i) * minDists[i];
+		}
+	}
+	
+	/**
+	 * Moves a data point to the closest centroid found by the index. The index also gives a lower bound on the
+	 * rest, except when the current centroid ties the one found and is kept, which then bounds the rest itself.
+	 * @param i - integer index of data point
+	 * @param minIndex - integer index of closest centroid
+	 * @param secondDist - double lower bound on squared distance to any centroid but the closest
+	 * @return double - squared distance to closest centroid
+	 */
+	private double assignIndexedCentroid(int i, int minIndex, double secondDist)
+	{
+		int oldIndex = dataCentroidIndex[i];
+		double minDist = distance(i, minIndex);
+		if (minIndex != oldIndex && distance(i, oldIndex) > minDist)
+		{
+			addToCluster(i, oldIndex, -1);
+			numberChanged++;
+			addToCluster(i, minIndex, 1);
+			dataCentroidIndex[i] = minIndex;
+		} else if (minIndex != oldIndex)
+		{
+			secondDist = minDist;
+			minDist = distance(i, oldIndex);
+		}
+		setBounds(i, Math.sqrt(minDist), Math.sqrt(secondDist));
+		return minDist;
+	}
+	
+	/**
+	 * Sets bounds of a data point, stored relative to how far centroids moved since the last full pass
+	 * @param i - integer index of data point
+	 * @param upper - double upper bound on distance to its centroid
+	 * @param lower - double lower bound on distance to any other centroid
+	 */
+	private void setBounds(int i, double upper, double lower)
+	{
+		upperBounds[i] = upper - centroidDrift[dataCentroidIndex[i]];
+		lowerBounds[i] = lower + maxDrift;
+		if (boundHeap != null)
+			boundHeap.set(i, dataCentroidIndex[i], lowerBounds[i] - upperBounds[i]);
+	}
+	
+	/**
+	 * Returns upper bound on distance from a data point to its centroid
+	 * @param i - integer index of data point
+	 * @return double
+	 */
+	private double upperBound(int i)
+	{
+		return upperBounds[i] + centroidDrift[dataCentroidIndex[i]];
+	}
+	
+	/**
+	 * Returns lower bound on distance from a data point to any centroid but its own
+	 * @param i - integer index of data point
+	 * @return double
+	 */
+	private double lowerBound(int i)
+	{
+		return lowerBounds[i] - maxDrift;
+	}
+	
+	/**
+	 * Starts drift from zero before a full pass sets every point's bounds. Appending's heap goes with it,
+	 * since its keys are relative to the drift.
+	 */
+	private void resetDrift()
+	{
+		centroidDrift = new double[numberCentroids];
+		maxDrift = 0;
+		boundHeap = null;
+	}
+	
+	/**
+	 * Returns squared distance between a data point and a centroid
+	 * @param i - integer index of data point
+	 * @param c - integer index of centroid
+	 * @return double
+	 */
+	private double distance(int i, int c)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<data.numCols(); j++)
+		{
+			diff = data.getValue(i, j) - centroids.getValue(c, j);
+			sum += diff * diff;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Adds or removes a data point from a centroid's sum and count, both scaled by the point's weight
+	 * @param i - integer index of data point
+	 * @param c - integer index of centroid
+	 * @param sign - integer 1 to add, -1 to remove
+	 */
+	private void addToCluster(int i, int c, int sign)
+	{
+		double w = sign * weight(i), value, square = 0;
+		for (int j=0; j<data.numCols(); j++)
+		{
+			value = data.getValue(i, j);
+			clusterSums[c][j] += w * value;
+			square += value * value;
+		}
+		clusterCounts[c] += w;
+		if (clusterSquares != null)
+			clusterSquares[c] += w * square;
+	}
+	
+	/**
+	 * Returns number of data points with positive weight, the only ones weighted picks can land on
+	 * @return int
+	 */
+	private int positiveWeights()
+	{
+		int count = 0;
+		for (int i=0; i<numberRows; i++)
+			if (weights[i] > 0)
+				count++;
+		return count;
+	}
+	
+	/**
+	 * Returns weight of a data point
+	 * @param i - integer index of data point
+	 * @return double
+	 */
+	private double weight(int i)
+	{
+		if (weights == null)
+			return 1;
+		return weights[i];
+	}
+	
+	/**
+	 * Moves each centroid to the weighted average of its data points. Sums are kept as labels change,
+	 * so average is found by dividing by counter. Bounds of every point are loosened by how far centroids moved.
+	 */
+	public void updateCentroidMeans()
+	{
+		moveCentroids(clusterMeans(), true);
+	}
+	
+	/**
+	 * Returns weighted average of each centroid's data points, keeping centroids with no points where they are
+	 * @return Matrix
+	 */
+	private Matrix clusterMeans()
+	{
+		Matrix means = centroids.copy();
+		for (int i=0; i<numberCentroids; i++)
+			if (clusterCounts[i] != 0)
+				for (int j=0; j<centroids.numCols(); j++)
+					means.setValue(i, j, clusterSums[i][j] / clusterCounts[i]);
+		return means;
+	}
+	
+	/**
+	 * Moves centroids to new positions, loosening bounds of every point by how far centroids moved.
+	 * Bounds are relative to the drift, so only the drift of each centroid is added to.
+	 * @param next - Matrix of new centroids
+	 * @param save - boolean whether to save new centroids in all centroids
+	 */
+	private void moveCentroids(Matrix next, boolean save)
+	{
+		// Add how far each centroid moved to its drift
+		double move, most = 0, diff;
+		for (int i=0; i<numberCentroids; i++)
+		{
+			move = 0;
+			for (int j=0; j<centroids.numCols(); j++)
+			{
+				diff = next.getValue(i, j) - centroids.getValue(i, j);
+				move += diff * diff;
+			}
+			move = Math.sqrt(move);
+			centroidDrift[i] += move;
+			most = Math.max(most, move);
+		}
+		maxDrift += most;
+		centroids = next;
 		
 		// Save new centroids in all centroids
-		oldCentroids.add(centroids.copy());
+		if (save)
+			oldCentroids.add(centroids.copy());
 	}
 	
 	/**
@@ -144,10 +689,243 @@ public class KMeans {
 	 */
 	public void Iterate()
 	{
+		if (accelerator != null)
+		{
+			iterateAccelerated();
+			return;
+		}
 		updateCentroidMeans();
 		updateClosestCentroid();
 	}
 	
+	/**
+	 * Iterates with an over-relaxed proposal that moves centroids further than the plain step. The proposal is
+	 * kept only if it lowers inertia, otherwise centroids fall back to the plain step, so inertia never goes up.
+	 * The plain step would lower inertia by at least each cluster's weight times how far its centroid moves squared,
+	 * found without touching data, so no proposal is tried once centroids stop moving.
+	 */
+	private void iterateAccelerated()
+	{
+		// Plain step and the inertia it is guaranteed
+		Matrix means = clusterMeans();
+		double before = inertia, guaranteed = inertia, diff, move;
+		for (int i=0; i<numberCentroids; i++)
+		{
+			move = 0;
+			for (int j=0; j<centroids.numCols(); j++)
+			{
+				diff = means.getValue(i, j) - centroids.getValue(i, j);
+				move += diff * diff;
+			}
+			guaranteed -= clusterCounts[i] * move;
+		}
+		
+		// Try proposal while centroids still move, keeping it if it lowers inertia
+		if (guaranteed < inertia)
+		{
+			double[] proposal = accelerator.next(flatten(centroids), flatten(means));
+			moveCentroids(unflatten(proposal), false);
+			updateClosestCentroid();
+			boolean taken = inertia < before;
+			accelerator.record(taken);
+			if (taken)
+			{
+				oldCentroids.add(centroids.copy());
+				return;
+			}
+		}
+		
+		// Plain step
+		moveCentroids(means, true);
+		updateClosestCentroid();
+	}
+	
+	/**
+	 * Returns centroids as one array by rows
+	 * @param m - Matrix of centroids
+	 * @return double[]
+	 */
+	private double[] flatten(Matrix m)
+	{
+		double[] flat = new double[m.numRows() * m.numCols()];
+		for (int i=0; i<m.numRows(); i++)
+			for (int j=0; j<m.numCols(); j++)
+				flat[i * m.numCols() + j] = m.getValue(i, j);
+		return flat;
+	}
+	
+	/**
+	 * Returns centroids from one array by rows
+	 * @param flat - double[] centroids by rows
+	 * @return Matrix
+	 */
+	private Matrix unflatten(double[] flat)
+	{
+		Matrix m = new Matrix(numberCentroids, data.numCols());
+		for (int i=0; i<numberCentroids; i++)
+			for (int j=0; j<data.numCols(); j++)
+				m.setValue(i, j, flat[i * data.numCols() + j]);
+		return m;
+	}
+	
+	/**
+	 * Adds new data points while keeping current centroids, labels and cluster sums. Only new points are
+	 * assigned from scratch, then K Means iterates from there. Old points are only checked when centroids
+	 * moved enough to break their bounds, found from the top of each centroid's bound heap, and inertia comes
+	 * from per cluster sums, so appends cost about as much as the points added and the old points they move.
+	 * The first append after a full pass builds the heap and sums of squares, which takes one pass over data.
+	 * @param newPoints - Matrix of data points to add
+	 */
+	public void append(Matrix newPoints)
+	{
+		// Make room, doubling so copies stay in proportion to points added
+		int n = numberRows;
+		if (n + newPoints.numRows() > data.numRows())
+			grow(Math.max(n + newPoints.numRows(), 2 * data.numRows()));
+		yinyang = null;
+		partial = null;
+		quantized = null;
+		
+		// Heap and sums of squares of old points, kept until the next full pass
+		if (boundHeap == null)
+		{
+			boundHeap = new BoundHeap(numberCentroids, data.numRows());
+			for (int i=0; i<n; i++)
+				boundHeap.set(i, dataCentroidIndex[i], lowerBounds[i] - upperBounds[i]);
+		}
+		if (clusterSquares == null)
+		{
+			clusterSquares = new double[numberCentroids];
+			for (int i=0; i<n; i++)
+				clusterSquares[dataCentroidIndex[i]] += weight(i) * squaredLength(i);
+		}
+		
+		// Copy and assign new points, which start in the first centroid's sum
+		for (int i=n; i<n + newPoints.numRows(); i++)
+		{
+			for (int j=0; j<data.numCols(); j++)
+				data.setValue(i, j, newPoints.getValue(i - n, j));
+			if (weights != null)
+				weights[i] = 1;
+			dataCentroidIndex[i] = 0;
+			numberRows++;
+			addToCluster(i, 0, 1);
+			assignClosestCentroid(i);
+		}
+		addFingerprint(n, numberRows);
+		
+		// Iterate from warm state until labels stop changing
+		for (int i=0; i<maxNumberIterations; i++)
+		{
+			updateCentroidMeans();
+			if (updateBoundedCentroid() == 0)
+				i = maxNumberIterations;
+		}
+		updateInertia();
+	}
+	
+	/**
+	 * Mixes values and weights of points into the data's fingerprint, so a checkpoint can tell it is of this data
+	 * @param start - integer index of first point
+	 * @param end - integer index after last point
+	 */
+	private void addFingerprint(int start, int end)
+	{
+		for (int i=start; i<end; i++)
+		{
+			for (int j=0; j<data.numCols(); j++)
+				fingerprint = Vectors.hash(fingerprint, data.getValue(i, j));
+			fingerprint = Vectors.hash(fingerprint, weight(i));
+		}
+	}
+	
+	/**
+	 * Grows data and per point arrays to hold more rows than there are points
+	 * @param capacity - integer number of rows to hold
+	 */
+	private void grow(int capacity)
+	{
+		// Copy data points into larger matrix
+		Matrix bigger = new Matrix(capacity, data.numCols());
+		for (int i=0; i<numberRows; i++)
+			for (int j=0; j<data.numCols(); j++)
+				bigger.setValue(i, j, data.getValue(i, j));
+		data = bigger;
+		
+		// Per point arrays
+		if (weights != null)
+			weights = Arrays.copyOf(weights, capacity);
+		dataCentroidIndex = Arrays.copyOf(dataCentroidIndex, capacity);
+		upperBounds = Arrays.copyOf(upperBounds, capacity);
+		lowerBounds = Arrays.copyOf(lowerBounds, capacity);
+		if (boundHeap != null)
+			boundHeap.grow(capacity);
+	}
+	
+	/**
+	 * Finds closest centroid only for points whose upper bound is above their lower bound, tightening the upper
+	 * bound first since that often settles it. Each centroid's heap holds its points by how far centroids can
+	 * move before their bounds cross, so points are taken from the top until the drift no longer reaches them.
+	 * @return int - number of points that changed centroid
+	 */
+	private int updateBoundedCentroid()
+	{
+		int changed = 0, oldIndex, i;
+		for (int c=0; c<numberCentroids; c++)
+			while ((i = boundHeap.peek(c)) >= 0 && boundHeap.getKey(i) < centroidDrift[c] + maxDrift)
+			{
+				// Tighten upper bound, then check every centroid if still crossed
+				setBounds(i, Math.sqrt(distance(i, c)), lowerBound(i));
+				if (upperBound(i) > lowerBound(i))
+				{
+					oldIndex = dataCentroidIndex[i];
+					assignClosestCentroid(i);
+					if (dataCentroidIndex[i] != oldIndex)
+						changed++;
+				}
+				
+				// Point back on top only when rounding leaves its bounds exactly equal, so rest are not crossed
+				if (boundHeap.peek(c) == i)
+					break;
+			}
+		return changed;
+	}
+	
+	/**
+	 * Finds inertia from each cluster's sums, as sum of squared lengths, minus twice the centroid dotted with
+	 * the sum of points, plus count times centroid's squared length
+	 */
+	private void updateInertia()
+	{
+		inertia = 0;
+		double cross, length;
+		for (int c=0; c<numberCentroids; c++)
+		{
+			cross = 0;
+			length = 0;
+			for (int j=0; j<data.numCols(); j++)
+			{
+				cross += centroids.getValue(c, j) * clusterSums[c][j];
+				length += centroids.getValue(c, j) * centroids.getValue(c, j);
+			}
+			inertia += clusterSquares[c] - 2 * cross + clusterCounts[c] * length;
+		}
+		inertia = Math.max(0, inertia);
+	}
+	
+	/**
+	 * Returns squared length of a data point
+	 * @param i - integer index of data point
+	 * @return double
+	 */
+	private double squaredLength(int i)
+	{
+		double sum = 0;
+		for (int j=0; j<data.numCols(); j++)
+			sum += data.getValue(i, j) * data.getValue(i, j);
+		return sum;
+	}
+	
 	///// CONVERGENCE METHODS /////
 
 	/**
@@ -166,73 +944,450 @@ public class KMeans {
 	 */
 	public void converge()
 	{
-		for (int i=0; i<maxNumberIterations; i++)
+		progress.reset(inertia);
+		converge(Double.MAX_VALUE, null);
+	}
+	
+	/**
+	 * Iterates K Means until converged. With early abandon on, gives up once converge progress judges the run
+	 * unlikely to beat the given inertia, which is a guess rather than a bound.
+	 * Picks up from the progress kept, so a restored run carries on where its checkpoint left off.
+	 * @param bestInertia - inertia of best run so far
+	 * @param afterIteration - Runnable run after each iteration that does not finish, null if none
+	 * @return boolean - true if converged (or out of iterations), false if abandoned
+	 */
+	private boolean converge(double bestInertia, Runnable afterIteration)
+	{
+		while (progress.hasIterationsLeft())
 		{
 			// Iterates 
 			Iterate();
 			
 			// If they are equal, exit
 			if (isConverged())
-				i = maxNumberIterations;
+				return true;
+			
+			// Give up if run looks worse than best
+			if (progress.abandon(inertia, bestInertia, earlyAbandon))
+				return false;
+			if (afterIteration != null)
+				afterIteration.run();
 		}
+		return true;
 	}
 	
 	/**
-	 * Runs through a number of K Means objects, finding converged centroids.
-	 * Each iteration adds centroids to array list if array list did not contain
-	 * or increases the counter for how often centroids appear.
-	 * This array list/boolean implementation necessary because similar matricies
-	 * can be different object, thus not handling .contains() well.
+	 * Runs through a number of K Means objects, keeping the converged centroids with the lowest inertia.
+	 * Only the best solution is held, and with early abandon on, runs that look worse than it are given up early.
+	 * If stable restarts is positive, stops once that many restarts in a row fail to improve the best.
 	 */
 	public void runAll()
 	{
-		// Array lists to hold converged centroids and counter
-		ArrayList<Matrix> allCents = new ArrayList<>();
-		ArrayList<Integer> allCounter = new ArrayList<>();
+		runAll(null, null);
+	}
+	
+	/**
+	 * Runs all restarts as run all does, writing checkpoints to a file in the background along the way.
+	 * If the file holds a checkpoint of this data, carries on from it instead of starting over, with the same
+	 * result as if the checkpointed run had never stopped. The file is deleted once every restart is done.
+	 * @param checkpointPath - Path of checkpoint file
+	 * @throws IOException if checkpoint cannot be read or written, or is of other data
+	 */
+	public void runAll(Path checkpointPath) throws IOException
+	{
+		// Read checkpoint left by an earlier run
+		Checkpoint resume = null;
+		if (Files.exists(checkpointPath))
+		{
+			resume = Checkpoint.read(checkpointPath);
+			if (resume.numberRows != numberRows || resume.numberCols != data.numCols()
+					|| resume.numberCentroids != numberCentroids || resume.fingerprint != fingerprint)
+				throw new IOException("Checkpoint is of other data: " + checkpointPath);
+		}
 		
-		// Boolean to check if loop increments counter or not
-		boolean incremented = false;
+		// Run, leaving the last checkpoint in place if stopped early
+		CheckpointWriter writer = new CheckpointWriter(checkpointPath, checkpointInterval);
+		try
+		{
+			runAll(resume, writer);
+		} finally {
+			writer.close();
+		}
+		Files.deleteIfExists(checkpointPath);
+	}
+	
+	/**
+	 * Runs all restarts, starting from a checkpoint and writing new ones if given
+	 * @param resume - Checkpoint to carry on from, null to start over
+	 * @param writer - CheckpointWriter to write checkpoints with, null for none
+	 */
+	private void runAll(Checkpoint resume, CheckpointWriter writer)
+	{
+		// Best centroids found so far, from checkpoint if resuming
+		Matrix bestCents = null;
+		double bestInertia = Double.MAX_VALUE;
+		int stable = 0, first = 0;
+		if (resume != null)
+		{
+			seed = resume.seed;
+			first = resume.restart;
+			stable = resume.stable;
+			bestInertia = resume.bestInertia;
+			if (resume.bestCentroids != null)
+				bestCents = Vectors.toMatrix(resume.bestCentroids);
+		}
 		
 		// While less than max number of iterations
 		KMeans km;
-		Matrix cents;
-		for (int i=0; i<maxNumberIterations; i++)
+		Runnable save = null;
+		for (int i=first; i<maxNumberIterations; i++)
 		{
-			// Initializes new KMeans object, iterates until converged, then grabs centroids
-			km = new KMeans(data, numberCentroids);
-			km.converge();
-			cents = km.getCentroids().sortByRows();
-
-			// If Array List contains matrix similar to current centroids, increase counter
-			incremented = false;
-			for (int j=0; j<allCents.size(); j++)
-				if (cents.minus(allCents.get(j)).squareSum() < epsilon)
-				{
-					allCounter.set(j, allCounter.get(j) + 1);
-					incremented = true;
-				}
+			// Initializes new KMeans object, or the checkpointed one when resuming
+			km = i == first && resume != null ? restore(resume) : restart(restartRandom(i), null);
 			
-			// If counter was not incremented, add new centroids
-			if (!incremented)
+			// Checkpoint after any iteration once due, holding run all progress as of this restart
+			if (writer != null)
 			{
-				allCents.add(cents);
-				allCounter.add(0);
+				KMeans run = km;
+				int restart = i, restartStable = stable;
+				Matrix best = bestCents;
+				double restartBest = bestInertia;
+				save = () -> {
+					if (writer.isDue())
+						writer.write(checkpoint(run, restart, restartStable, best, restartBest));
+				};
 			}
+			
+			// Iterates until converged or abandoned
+			if (km.converge(bestInertia, save) && km.getInertia() < bestInertia * (1 - epsilon))
+			{
+				bestCents = km.getCentroids().copy();
+				bestInertia = km.getInertia();
+				stable = 0;
+			} else {
+				stable++;
+			}
+			
+			// Report progress, then exit if best has not changed in a while
+			if (restartListener != null)
+				restartListener.accept(i);
+			if (stableRestarts > 0 && stable >= stableRestarts)
+				i = maxNumberIterations;
+		}
+		
+		useBest(bestCents);
+	}
+	
+	/**
+	 * Updates current K Means with best centroids of run all, summing clusters again so a resumed run ends the same.
+	 * Streams labels to the exporter if one is set, with the centroids they were found against before those move.
+	 * @param bestCents - Matrix of best centroids
+	 */
+	private void useBest(Matrix bestCents)
+	{
+		oldCentroids.clear();
+		centroids = bestCents;
+		resetClusters();
+		if (exporter == null)
+		{
+			updateClosestCentroid();
+			updateCentroidMeans();
+			return;
 		}
 		
-		// Finds centroids with maximum counter
-		int maxIndex = 0;
-		for (int i=1; i<allCounter.size(); i++)
-			if (allCounter.get(i) > allCounter.get(maxIndex))
-				maxIndex = i;
+		// Stream labels while labeling, then the centroids they are to, as export does, before moving them
+		export(exporter);
+		updateCentroidMeans();
+	}
+	
+	/**
+	 * Labels every point by the current centroids, streaming each label and distance to the exporter as it is found,
+	 * then the centroids. Centroids are not moved, so the files match the centroids written.
+	 * @param out - ResultExporter to stream to, closed by the caller to finish the files
+	 */
+	public void export(ResultExporter out)
+	{
+		exportClosestCentroid(out);
+		out.writeCentroids(Vectors.toArray(centroids));
+	}
+	
+	/**
+	 * Runs through a number of K Means objects, finding converged centroids and keeping the most frequent.
+	 * Each converged solution is counted in a solution table, which hashes centroids so runs are
+	 * matched without comparing against every earlier solution.
+	 */
+	public void runAllMostFrequent()
+	{
+		// Table to count converged centroids
+		SolutionTable table = new SolutionTable();
+		
+		// While less than max number of iterations
+		KMeans km;
+		for (int i=0; i<maxNumberIterations; i++)
+		{
+			// Initializes new KMeans object, iterates until converged, then counts centroids
+			km = restart(restartRandom(i), null);
+			km.converge();
+			table.add(km.getCentroids());
+		}
 		
-		// Updates current K Means with max centroids
+		// Updates current K Means with most frequent centroids
 		oldCentroids.clear();
-		centroids = allCents.get(maxIndex);
+		centroids = table.getMostFrequent();
 		updateClosestCentroid();
 		updateCentroidMeans();
 	}
 	
+	/**
+	 * Runs the same restarts as run all, but in batches of lockstep models that share each pass over the data,
+	 * which is split over all processors. Each model starts from the random stream run all gives its restart, and
+	 * models are judged in restart order, so stable restarts, the restart listener and the exporter work as in
+	 * run all. Early abandon judges a batch against the best of earlier batches and its own converged models.
+	 * Lockstep models are unweighted and not accelerated, so weighted data or acceleration uses run all instead.
+	 */
+	public void runAllLockstep()
+	{
+		if (weights != null || accelerator != null)
+		{
+			runAll();
+			return;
+		}
+		
+		// Best centroids found so far
+		double[][] array = Vectors.toArray(getData());
+		Matrix bestCents = null;
+		double bestInertia = Double.MAX_VALUE;
+		int stable = 0;
+		
+		// Run restarts in batches
+		LockstepKMeans lk;
+		Random[] rands;
+		for (int i=0; i<maxNumberIterations; i+=lockstepModels)
+		{
+			rands = new Random[Math.min(lockstepModels, maxNumberIterations - i)];
+			for (int r=0; r<rands.length; r++)
+				rands[r] = restartRandom(i + r);
+			lk = new LockstepKMeans(array, numberCentroids, rands);
+			lk.setEarlyAbandon(earlyAbandon);
+			lk.converge(bestInertia);
+			
+			// Judge models in restart order as run all does, exiting if best has not changed in a while
+			for (int r=0; r<rands.length && i + r < maxNumberIterations; r++)
+			{
+				if (lk.isConverged(r) && lk.getInertia(r) < bestInertia * (1 - epsilon))
+				{
+					bestCents = Vectors.toMatrix(lk.getCentroids(r));
+					bestInertia = lk.getInertia(r);
+					stable = 0;
+				} else {
+					stable++;
+				}
+				if (restartListener != null)
+					restartListener.accept(i + r);
+				if (stableRestarts > 0 && stable >= stableRestarts)
+					i = maxNumberIterations;
+			}
+		}
+		useBest(bestCents);
+	}
+	
+	/**
+	 * Returns random stream of a restart, split from the seed by restart index
+	 * @param i - integer index of restart
+	 * @return Random
+	 */
+	private Random restartRandom(int i)
+	{
+		return new Random(new SplittableRandom(seed + i).nextLong());
+	}
+	
+	/**
+	 * Returns new K Means object for a restart, with the same settings as this one
+	 * @param rand - Random to pick starting centroids with
+	 * @param initialCentroids - Matrix of starting centroids, null for random
+	 * @return KMeans
+	 */
+	private KMeans restart(Random rand, Matrix initialCentroids)
+	{
+		KMeans km = new KMeans(getData(), getWeights(), numberCentroids, initialCentroids, rand);
+		km.selector = selector;
+		km.setColumnStats(stats);
+		km.setAssignment(assignment);
+		km.setAcceleration(accelerator != null);
+		km.setEarlyAbandon(earlyAbandon);
+		return km;
+	}
+	
+	/**
+	 * Returns restart K Means object as it was when checkpointed. Labels follow from centroids,
+	 * but cluster sums, inertia and converge progress are restored as written so the run carries on exactly.
+	 * In auto mode the engine and measured work fractions are restored too, the engine's bounds being found again.
+	 * @param cp - Checkpoint to restore
+	 * @return KMeans
+	 */
+	private KMeans restore(Checkpoint cp)
+	{
+		KMeans km = restart(null, Vectors.toMatrix(cp.centroids));
+		for (int i=0; i<numberCentroids; i++)
+			km.clusterSums[i] = cp.clusterSums[i].clone();
+		km.clusterCounts = cp.clusterCounts.clone();
+		km.inertia = cp.inertia;
+		km.progress.iteration = cp.iteration;
+		km.progress.lastInertia = cp.lastInertia;
+		km.progress.lastDecrease = cp.lastDecrease;
+		if (km.accelerator != null)
+			km.accelerator.setStep(cp.relaxation);
+		if (assignment == Assignment.AUTO)
+		{
+			km.engine = cp.engine;
+			km.reconsidered = cp.reconsidered;
+			if (cp.engineWork != null)
+				selector.setWorkFractions(cp.engineWork);
+		}
+		return km;
+	}
+	
+	/**
+	 * Returns checkpoint of run all part way through a restart
+	 * @param run - KMeans of current restart
+	 * @param restart - integer index of current restart
+	 * @param stable - integer restarts in a row without improvement before current one
+	 * @param bestCents - Matrix of best centroids so far, null if none
+	 * @param bestInertia - inertia of best centroids so far
+	 * @return Checkpoint
+	 */
+	private Checkpoint checkpoint(KMeans run, int restart, int stable, Matrix bestCents, double bestInertia)
+	{
+		Checkpoint cp = new Checkpoint();
+		cp.numberRows = numberRows;
+		cp.numberCols = data.numCols();
+		cp.numberCentroids = numberCentroids;
+		cp.fingerprint = fingerprint;
+		cp.seed = seed;
+		cp.restart = restart;
+		cp.stable = stable;
+		cp.bestInertia = bestInertia;
+		cp.bestCentroids = bestCents == null ? null : Vectors.toArray(bestCents);
+		cp.iteration = run.progress.iteration;
+		cp.inertia = run.inertia;
+		cp.lastInertia = run.progress.lastInertia;
+		cp.lastDecrease = run.progress.lastDecrease;
+		cp.relaxation = run.accelerator == null ? 1 : run.accelerator.getStep();
+		cp.centroids = Vectors.toArray(run.centroids);
+		cp.clusterSums = new double[numberCentroids][];
+		for (int i=0; i<numberCentroids; i++)
+			cp.clusterSums[i] = run.clusterSums[i].clone();
+		cp.clusterCounts = run.clusterCounts.clone();
+		cp.engine = assignment == Assignment.AUTO ? run.engine : null;
+		cp.reconsidered = run.reconsidered;
+		cp.engineWork = selector == null || assignment != Assignment.AUTO ? null : selector.getWorkFractions();
+		return cp;
+	}
+	
+	///// SETTERS /////
+	
+	/**
+	 * Sets how closest centroids are found, which also applies to restarts in run all.
+	 * Auto mode shares one selector and its log with restarts, and finds column stats if none were given.
+	 * Auto mode can also pick the quantized engine, which no mode asks for directly.
+	 * @param mode - Assignment mode
+	 */
+	public void setAssignment(Assignment mode)
+	{
+		assignment = mode;
+		engine = mode == Assignment.AUTO ? null : Engine.of(mode);
+		reconsidered = false;
+		yinyang = null;
+		partial = null;
+		quantized = null;
+		if (mode == Assignment.AUTO && selector == null)
+			selector = new EngineSelector();
+		if (mode == Assignment.AUTO && stats == null)
+			stats = new ColumnStats(getData());
+	}
+	
+	/**
+	 * Turns over-relaxed acceleration of centroid updates on or off, which also applies to restarts in run all
+	 * @param on - boolean whether to accelerate
+	 */
+	public void setAcceleration(boolean on)
+	{
+		accelerator = on ? new OverRelaxation() : null;
+	}
+	
+	/**
+	 * Sets column stats found at load time, so dimension order does not need another pass over data.
+	 * Stats are shared with restarts in run all.
+	 * @param columnStats - ColumnStats of data
+	 */
+	public void setColumnStats(ColumnStats columnStats)
+	{
+		stats = columnStats;
+		partial = null;
+		quantized = null;
+	}
+	
+	/**
+	 * Sets number of restarts in a row without improvement before run all stops, 0 runs every restart
+	 * @param n - integer number of restarts
+	 */
+	public void setStableRestarts(int n)
+	{
+		stableRestarts = n;
+	}
+	
+	/**
+	 * Sets seed of restarts in run all, so the same seed on the same data gives the same result
+	 * @param s - long seed
+	 */
+	public void setSeed(long s)
+	{
+		seed = s;
+	}
+	
+	/**
+	 * Sets whether run all gives up restarts whose extrapolated inertia looks worse than the best. Saves passes,
+	 * but the extrapolation is a guess rather than a bound, so it can give up a restart that would have won.
+	 * Off by default.
+	 * @param on - boolean true to give up early
+	 */
+	public void setEarlyAbandon(boolean on)
+	{
+		earlyAbandon = on;
+	}
+	
+	/**
+	 * Sets least time between checkpoints written by run all with a checkpoint file
+	 * @param millis - long milliseconds
+	 */
+	public void setCheckpointInterval(long millis)
+	{
+		checkpointInterval = millis;
+	}
+	
+	/**
+	 * Sets listener told the index of each restart run all finishes, so callers can report progress.
+	 * A listener may throw to stop run all early.
+	 * @param listener - IntConsumer of restart index, null for none
+	 */
+	public void setRestartListener(IntConsumer listener)
+	{
+		restartListener = listener;
+	}
+	
+	/**
+	 * Sets exporter the final labeling pass of run all streams labels, distances and centroids to, so results
+	 * reach files without a second pass. Labels, distances and centroids written are the best centroids found and
+	 * the labeling against them, as export gives. Centroids then move to the means of their points as without an
+	 * exporter, so get centroids can differ from the centroids written.
+	 * The caller closes the exporter after run all to finish the files.
+	 * @param out - ResultExporter to stream to, null for none
+	 */
+	public void setExporter(ResultExporter out)
+	{
+		exporter = out;
+	}
+	
 	///// GETTERS /////
 	
 	/**
@@ -241,7 +1396,24 @@ public class KMeans {
 	 */
 	public Matrix getData()
 	{
-		return data;
+		if (numberRows == data.numRows())
+			return data;
+		Matrix m = new Matrix(numberRows, data.numCols());
+		for (int i=0; i<numberRows; i++)
+			for (int j=0; j<data.numCols(); j++)
+				m.setValue(i, j, data.getValue(i, j));
+		return m;
+	}
+
+	/**
+	 * Returns weight of each data point, null if all weigh one
+	 * @return double[]
+	 */
+	public double[] getWeights()
+	{
+		if (weights == null || weights.length == numberRows)
+			return weights;
+		return Arrays.copyOf(weights, numberRows);
 	}
 
 	/**
@@ -250,7 +1422,9 @@ public class KMeans {
 	 */
 	public int[] getDataCentroidIndex()
 	{
-		return dataCentroidIndex;
+		if (dataCentroidIndex.length == numberRows)
+			return dataCentroidIndex;
+		return Arrays.copyOf(dataCentroidIndex, numberRows);
 	}
 
 	/**
@@ -262,6 +1436,66 @@ public class KMeans {
 		return centroids;
 	}
 	
+	/**
+	 * Returns engine finding closest centroids, which in auto mode is the one last chosen
+	 * @return Engine
+	 */
+	public Engine getEngine()
+	{
+		return engine == null ? Engine.STANDARD : engine;
+	}
+	
+	/**
+	 * Returns decisions made in auto mode, oldest first, empty if auto mode is not used
+	 * @return ArrayList<String>
+	 */
+	public ArrayList<String> getEngineLog()
+	{
+		return selector == null ? new ArrayList<>() : selector.getLog();
+	}
+	
+	/**
+	 * Returns fraction of point to centroid distances skipped in last assignment, 0 if mode does not skip any
+	 * @return double
+	 */
+	public double getPruningRate()
+	{
+		if (yinyang != null)
+			return yinyang.getPruningRate();
+		if (partial != null)
+			return partial.getPruningRate();
+		if (quantized != null)
+			return quantized.getPruningRate();
+		return 0;
+	}
+	
+	/**
+	 * Returns number of passes over data made to find closest centroids, including rejected accelerated steps
+	 * @return int
+	 */
+	public int getNumberPasses()
+	{
+		return numberPasses;
+	}
+	
+	/**
+	 * Returns over-relaxation accelerator, null if acceleration is off
+	 * @return OverRelaxation
+	 */
+	public OverRelaxation getAccelerator()
+	{
+		return accelerator;
+	}
+	
+	/**
+	 * Returns sum of squared distances from each point to its closest centroid
+	 * @return double
+	 */
+	public double getInertia()
+	{
+		return inertia;
+	}
+	
 	/**
 	 * Returns array list of matricies that is collection of all past centroids
 	 * @return allCentroids (ArrayList<Matrix>)
@@ -0,0 +1,331 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * KSweep runs K Means for a range of centroid counts in one job so an elbow can be found.
+ * The range is split into chunks that run in parallel. Inside a chunk, each k after the first starts
+ * from the centroids of k-1 with the worst cluster split in two, so it converges in few iterations.
+ * The data and the squared norm of each point are computed once and shared by every run.
+ * Each chain's random starting points are split from one seed by the k it starts at, so the same seed
+ * and number of threads give the same results. Centroids always start at distinct points, so no cluster starts
+ * empty, which is why k can be at most the number of distinct rows.
+ * @author Nick Farrenkopf
+ */
+public class KSweep {
+
+	// Shared data, squared norm of each row and number of distinct rows
+	private double[][] data;
+	private double[] norms;
+	private int numberDistinct;
+	
+	// Seed each chain's random stream is split from
+	private long seed;
+	
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes sweep by copying data to arrays and finding norms
+	 * @param matrixData - Matrix of data
+	 */
+	public KSweep(Matrix matrixData)
+	{
+		data = Vectors.toArray(matrixData);
+		norms = new double[data.length];
+		for (int i=0; i<data.length; i++)
+			norms[i] = dot(data[i], data[i]);
+		numberDistinct = DuplicateCollapser.countDistinct(matrixData);
+		seed = new Random().nextLong();
+	}
+
+	///// SWEEP METHODS /////
+
+	/**
+	 * Runs K Means for every number of centroids from min to max using all processors
+	 * @param minK - integer smallest number of centroids
+	 * @param maxK - integer largest number of centroids
+	 * @return ArrayList<SweepResult> - one result per k in increasing order
+	 */
+	public ArrayList<SweepResult> sweep(int minK, int maxK)
+	{
+		return sweep(minK, maxK, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Runs K Means for every number of centroids from min to max. The range is split into one chunk per thread,
+	 * and each chunk is a chain of warm starts.
+	 * @param minK - integer smallest number of centroids
+	 * @param maxK - integer largest number of centroids
+	 * @param threads - integer number of threads
+	 * @return ArrayList<SweepResult> - one result per k in increasing order
+	 * @throws IllegalArgumentException if range is not within 1 to number of distinct points, or threads is below 1
+	 */
+	public ArrayList<SweepResult> sweep(int minK, int maxK, int threads)
+	{
+		// Range must be possible to start and split
+		if (minK < 1 || minK > maxK || maxK > data.length)
+			throw new IllegalArgumentException("Number of centroids must be between 1 and number of data points, "
+					+ "with min no more than max");
+		if (maxK > numberDistinct)
+			throw new IllegalArgumentException("Data has only " + numberDistinct
+					+ " distinct points, fewer than largest number of centroids");
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be at least 1");
+		
+		// Split range into chunks
+		int numK = maxK - minK + 1;
+		int numChunks = Math.max(1, Math.min(threads, numK / minSweepChain));
+		ExecutorService pool = Executors.newFixedThreadPool(numChunks);
+		ArrayList<Future<ArrayList<SweepResult>>> futures = new ArrayList<>();
+		for (int c=0; c<numChunks; c++)
+		{
+			int start = minK + c * numK / numChunks;
+			int end = minK + (c + 1) * numK / numChunks - 1;
+			futures.add(pool.submit(() -> runChain(start, end)));
+		}
+
+		// Gather results in order
+		ArrayList<SweepResult> results = new ArrayList<>();
+		try {
+			for (Future<ArrayList<SweepResult>> f:futures)
+				results.addAll(f.get());
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+		return results;
+	}
+
+	/**
+	 * Runs a chain of warm started K Means from start to end number of centroids
+	 * @param start - integer first number of centroids, started from random points
+	 * @param end - integer last number of centroids
+	 * @return ArrayList<SweepResult>
+	 */
+	private ArrayList<SweepResult> runChain(int start, int end)
+	{
+		ArrayList<SweepResult> results = new ArrayList<>();
+		int[] labels = new int[data.length];
+		double[][] cents = randomCentroids(start);
+		for (int k=start; k<=end; k++)
+		{
+			// Split worst cluster of last run
+			long time = System.nanoTime();
+			if (k > start)
+				cents = splitWorstCluster(cents, labels);
+
+			// Iterate until labels stop changing
+			int iterations = 0;
+			boolean changed = true;
+			while (changed && iterations < maxNumberIterations)
+			{
+				changed = assign(cents, labels);
+				updateMeans(cents, labels);
+				iterations++;
+			}
+			results.add(new SweepResult(k, copy(cents), inertia(cents, labels), iterations, System.nanoTime() - time));
+		}
+		return results;
+	}
+
+	/**
+	 * Finds closest centroid of each point using shared norms, |x - c|^2 = |x|^2 - 2 x.c + |c|^2
+	 * @param cents - double[][] centroids
+	 * @param labels - int[] labels to update
+	 * @return boolean - true if any label changed
+	 */
+	private boolean assign(double[][] cents, int[] labels)
+	{
+		// Centroid norms
+		double[] centNorms = new double[cents.length];
+		for (int c=0; c<cents.length; c++)
+			centNorms[c] = dot(cents[c], cents[c]);
+
+		// Closest centroid of each point
+		boolean changed = false;
+		int minIndex;
+		double minDist, newDist;
+		for (int i=0; i<data.length; i++)
+		{
+			minIndex = 0;
+			minDist = Double.MAX_VALUE;
+			for (int c=0; c<cents.length; c++)
+			{
+				newDist = norms[i] - 2 * dot(data[i], cents[c]) + centNorms[c];
+				if (newDist < minDist)
+				{
+					minIndex = c;
+					minDist = newDist;
+				}
+			}
+			if (labels[i] != minIndex)
+			{
+				labels[i] = minIndex;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Moves centroids to mean of their points, leaving empty centroids in place
+	 * @param cents - double[][] centroids to update
+	 * @param labels - int[] labels of points
+	 */
+	private void updateMeans(double[][] cents, int[] labels)
+	{
+		double[][] sums = new double[cents.length][cents[0].length];
+		int[] counts = new int[cents.length];
+		for (int i=0; i<data.length; i++)
+		{
+			for (int j=0; j<data[i].length; j++)
+				sums[labels[i]][j] += data[i][j];
+			counts[labels[i]]++;
+		}
+		for (int c=0; c<cents.length; c++)
+			if (counts[c] != 0)
+				for (int j=0; j<cents[c].length; j++)
+					cents[c][j] = sums[c][j] / counts[c];
+	}
+
+	/**
+	 * Adds a centroid by splitting the cluster with the largest sum of squared distances. The new centroid
+	 * is the point in that cluster farthest from its centroid. With fewer centroids than distinct points some
+	 * cluster has a point away from its centroid, so the new centroid is never a copy of an old one.
+	 * @param cents - double[][] centroids
+	 * @param labels - int[] labels of points
+	 * @return double[][] - centroids with one more row
+	 */
+	private double[][] splitWorstCluster(double[][] cents, int[] labels)
+	{
+		// Sum squared distances per cluster
+		double[] sse = new double[cents.length];
+		for (int i=0; i<data.length; i++)
+			sse[labels[i]] += Vectors.squaredDistance(data[i], cents[labels[i]]);
+		int worst = 0;
+		for (int c=1; c<cents.length; c++)
+			if (sse[c] > sse[worst])
+				worst = c;
+
+		// Farthest point of worst cluster, first point if all clusters are empty
+		int farthest = 0;
+		double maxDist = -1, dist;
+		for (int i=0; i<data.length; i++)
+			if (labels[i] == worst)
+			{
+				dist = Vectors.squaredDistance(data[i], cents[worst]);
+				if (dist > maxDist)
+				{
+					farthest = i;
+					maxDist = dist;
+				}
+			}
+
+		// Add new centroid
+		double[][] split = new double[cents.length + 1][];
+		for (int c=0; c<cents.length; c++)
+			split[c] = cents[c];
+		split[cents.length] = data[farthest].clone();
+		return split;
+	}
+
+	/**
+	 * Returns centroids at random data points with distinct values, drawn from a stream split from the seed by k
+	 * @param k - integer number of centroids
+	 * @return double[][]
+	 */
+	private double[][] randomCentroids(int k)
+	{
+		// Set keeps contains fast for many centroids, points equal to one already picked are skipped
+		ArrayList<Integer> indexes = new ArrayList<>();
+		HashSet<Integer> chosen = new HashSet<>();
+		Random rand = new Random(new SplittableRandom(seed + k).nextLong());
+		int newIndex;
+		while (indexes.size() != k)
+		{
+			newIndex = rand.nextInt(data.length);
+			if (!chosen.contains(newIndex) && !repeats(newIndex, indexes))
+				indexes.add(newIndex);
+			chosen.add(newIndex);
+		}
+		double[][] cents = new double[k][];
+		for (int c=0; c<k; c++)
+			cents[c] = data[indexes.get(c)].clone();
+		return cents;
+	}
+
+	/**
+	 * Returns whether a data point has the same values as any of the picked points
+	 * @param index - integer index of data point
+	 * @param indexes - ArrayList<Integer> indexes of picked points
+	 * @return boolean
+	 */
+	private boolean repeats(int index, ArrayList<Integer> indexes)
+	{
+		for (int picked:indexes)
+			if (Vectors.squaredDistance(data[index], data[picked]) == 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns sum of squared distances from each point to its centroid
+	 * @param cents - double[][] centroids
+	 * @param labels - int[] labels of points
+	 * @return double
+	 */
+	private double inertia(double[][] cents, int[] labels)
+	{
+		double sum = 0;
+		for (int i=0; i<data.length; i++)
+			sum += Vectors.squaredDistance(data[i], cents[labels[i]]);
+		return sum;
+	}
+
+	/**
+	 * Returns dot product of two vectors
+	 * @param a - double[] first vector
+	 * @param b - double[] second vector
+	 * @return double
+	 */
+	private static double dot(double[] a, double[] b)
+	{
+		double sum = 0;
+		for (int j=0; j<a.length; j++)
+			sum += a[j] * b[j];
+		return sum;
+	}
+
+	/**
+	 * Returns deep copy of centroids
+	 * @param cents - double[][] centroids
+	 * @return double[][]
+	 */
+	private static double[][] copy(double[][] cents)
+	{
+		double[][] c = new double[cents.length][];
+		for (int i=0; i<cents.length; i++)
+			c[i] = cents[i].clone();
+		return c;
+	}
+	
+	///// SETTERS /////
+	
+	/**
+	 * Sets seed of random starting points, so the same seed on the same data gives the same results
+	 * @param s - long seed
+	 */
+	public void setSeed(long s)
+	{
+		seed = s;
+	}
+}
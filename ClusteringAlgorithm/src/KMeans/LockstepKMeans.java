@@ -0,0 +1,400 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.stream.IntStream;
+import static KMeans.Constants.*;
+
+/**
+ * LockstepKMeans advances several independent K Means models together. Running restarts one after another
+ * reads the whole data set once per iteration per restart. Here each point is read once per pass and checked
+ * against every active model while it is in registers, and each model's centroids sit together in one flat array,
+ * so the inner loop runs through one stretch of memory per model. Each point also keeps a lower bound per model on
+ * the distance to any centroid but its own, loosened by the farthest any of the model's centroids moved, so a point
+ * still closer to its own centroid than that bound skips the rest. Passes are split into parts of the data that
+ * run in parallel, each part summing into its own sums, which are merged once at the end of the pass.
+ * Models drop out of the batch once converged, out of iterations, or with early abandon on, once converge progress
+ * judges them worse than the best so far.
+ * @author Nick Farrenkopf
+ */
+public class LockstepKMeans {
+
+	// Hold data vectors
+	private double[][] data;
+	private int numberCols;
+
+	// Model variables, centroids flattened by model, then centroid, then column
+	private int numberModels;
+	private int numberCentroids;
+	private double[] centroids;
+	private int[][] labels;
+	private double[] inertia;
+
+	// Lower bound on distance from each point to any centroid but its own by model, and how far centroids
+	// of each model moved at most since bounds were set
+	private double[][] lowerBounds;
+	private double[] maxDrift;
+
+	// Models still iterating in order, converge progress of each, and whether they converged or were abandoned
+	private int[] active;
+	private ConvergeProgress[] progress;
+	private boolean[] converged;
+	private int numberPasses;
+	private boolean earlyAbandon;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes several K Means models on the same data, each with centroids at random data points picked
+	 * from its own random stream
+	 * @param data - double[][] array of data rows
+	 * @param numCentroids - integer number of centroids
+	 * @param rands - Random[] one per model, used to pick its starting centroids
+	 */
+	public LockstepKMeans(double[][] data, int numCentroids, Random[] rands)
+	{
+		// Set data
+		if (numCentroids < 1 || numCentroids > data.length)
+			throw new IllegalArgumentException("Number of centroids must be between 1 and number of data points");
+		this.data = data;
+		numberCols = data[0].length;
+		numberCentroids = numCentroids;
+		numberModels = rands.length;
+
+		// Initialize models
+		centroids = new double[numberModels * numCentroids * numberCols];
+		labels = new int[numberModels][data.length];
+		inertia = new double[numberModels];
+		lowerBounds = new double[numberModels][data.length];
+		maxDrift = new double[numberModels];
+		active = new int[numberModels];
+		progress = new ConvergeProgress[numberModels];
+		converged = new boolean[numberModels];
+		for (int r=0; r<numberModels; r++)
+		{
+			randomizeCentroids(r, rands[r]);
+			Arrays.fill(labels[r], -1);
+			active[r] = r;
+		}
+	}
+
+	///// K MEANS METHODS /////
+
+	/**
+	 * Initialize all centroids of a model to distinct random data points, picked as K Means picks them
+	 * @param r - integer model index
+	 * @param rand - Random to pick points
+	 */
+	private void randomizeCentroids(int r, Random rand)
+	{
+		// Choose random number until not in indexes, then add to indexes
+		ArrayList<Integer> indexes = new ArrayList<>();
+		HashSet<Integer> chosen = new HashSet<>();
+		int newIndex;
+		while (indexes.size() != numberCentroids)
+		{
+			newIndex = rand.nextInt(data.length);
+			if (chosen.add(newIndex))
+				indexes.add(newIndex);
+		}
+
+		// Set centroids to random vertices
+		for (int c=0; c<numberCentroids; c++)
+			System.arraycopy(data[indexes.get(c)], 0, centroids, (r * numberCentroids + c) * numberCols, numberCols);
+	}
+
+	/**
+	 * Runs one pass over the data for every active model, labeling each point with its closest centroid and
+	 * summing it, then moves centroids to the means. A model whose labels did not change in the pass has
+	 * converged and drops out, as does one out of iterations or given up by early abandon.
+	 * @param bestInertia - double inertia of best model so far from earlier batches
+	 * @return int - number of models still active
+	 */
+	public int Iterate(double bestInertia)
+	{
+		// Parts of the data run in parallel, each at least a block of points
+		int[] models = active;
+		int numParts = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+				(long) data.length / lockstepBlockSize));
+		Pass pass = IntStream.range(0, numParts).parallel()
+				.mapToObj(p -> assignPart(models, (int) ((long) p * data.length / numParts),
+						(int) ((long) (p + 1) * data.length / numParts)))
+				.reduce(Pass::merge).get();
+
+		// Move centroids to means, noting farthest move of each model
+		int base;
+		double move, value, diff;
+		for (int r:models)
+		{
+			inertia[r] = pass.inertia[r];
+			maxDrift[r] = 0;
+			for (int c=0; c<numberCentroids; c++)
+			{
+				base = r * numberCentroids + c;
+				if (pass.counts[base] == 0)
+					continue;
+				move = 0;
+				for (int j=0; j<numberCols; j++)
+				{
+					value = pass.sums[base * numberCols + j] / pass.counts[base];
+					diff = value - centroids[base * numberCols + j];
+					move += diff * diff;
+					centroids[base * numberCols + j] = value;
+				}
+				maxDrift[r] = Math.max(maxDrift[r], Math.sqrt(move));
+			}
+		}
+		numberPasses++;
+
+		// Best includes models of this batch that converged already
+		int best = getBestModel();
+		if (best >= 0)
+			bestInertia = Math.min(bestInertia, inertia[best]);
+
+		// First pass only starts progress, later passes check which models are done
+		int[] next = new int[models.length];
+		int numActive = 0;
+		for (int r:models)
+		{
+			if (progress[r] == null)
+				progress[r] = new ConvergeProgress(inertia[r]);
+			else if (!pass.changed[r])
+			{
+				converged[r] = true;
+				continue;
+			} else if (progress[r].abandon(inertia[r], bestInertia, earlyAbandon))
+				continue;
+			else if (!progress[r].hasIterationsLeft())
+			{
+				// Out of iterations counts as converged, as in K Means
+				converged[r] = true;
+				continue;
+			}
+			next[numActive++] = r;
+		}
+		active = Arrays.copyOf(next, numActive);
+		return numActive;
+	}
+
+	/**
+	 * Labels a part of the points for every active model and adds them to the part's sums
+	 * @param models - int[] indexes of active models
+	 * @param start - integer index of first point
+	 * @param end - integer index after last point
+	 * @return Pass - sums of the part
+	 */
+	private Pass assignPart(int[] models, int start, int end)
+	{
+		Pass pass = new Pass(numberModels, numberCentroids, numberCols);
+		double[] point;
+		double dist, bestDist, secondDist;
+		int label, best, base, offset;
+		for (int i=start; i<end; i++)
+		{
+			point = data[i];
+			for (int r:models)
+			{
+				// Current centroid first so it is kept on ties, and is all that is checked if still within bound
+				base = r * numberCentroids;
+				label = labels[r][i];
+				best = label;
+				bestDist = label < 0 ? Double.MAX_VALUE : distance(point, (base + label) * numberCols);
+				lowerBounds[r][i] -= maxDrift[r];
+				if (label < 0 || Math.sqrt(bestDist) > lowerBounds[r][i])
+				{
+					// Closest and second closest centroid
+					secondDist = Double.MAX_VALUE;
+					for (int c=0; c<numberCentroids; c++)
+					{
+						if (c == label)
+							continue;
+						dist = distance(point, (base + c) * numberCols);
+						if (dist < bestDist)
+						{
+							secondDist = bestDist;
+							best = c;
+							bestDist = dist;
+						} else if (dist < secondDist)
+							secondDist = dist;
+					}
+					lowerBounds[r][i] = Math.sqrt(secondDist);
+				}
+
+				// Update label, then add point to its centroid's sum
+				if (best != label)
+				{
+					labels[r][i] = best;
+					pass.changed[r] = true;
+				}
+				offset = (base + best) * numberCols;
+				for (int j=0; j<numberCols; j++)
+					pass.sums[offset + j] += point[j];
+				pass.counts[base + best]++;
+				pass.inertia[r] += bestDist;
+			}
+		}
+		return pass;
+	}
+
+	/**
+	 * Returns squared distance from a point to a centroid in the flat centroid array
+	 * @param point - double[] point
+	 * @param offset - integer index of centroid's first value
+	 * @return double
+	 */
+	private double distance(double[] point, int offset)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<numberCols; j++)
+		{
+			diff = point[j] - centroids[offset + j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Iterates all models until each has converged, been abandoned, or reached max number of iterations
+	 */
+	public void converge()
+	{
+		converge(Double.MAX_VALUE);
+	}
+
+	/**
+	 * Iterates all models until each has converged, been abandoned, or reached max number of iterations
+	 * @param bestInertia - double inertia of best model so far from earlier batches, for early abandon
+	 */
+	public void converge(double bestInertia)
+	{
+		while (Iterate(bestInertia) > 0);
+	}
+
+	///// SETTERS /////
+
+	/**
+	 * Sets whether models that look worse than the best so far are dropped early, as early abandon in K Means.
+	 * This is a guess rather than a bound, so it can drop a model that would have won. Off by default.
+	 * @param on - boolean true to drop early
+	 */
+	public void setEarlyAbandon(boolean on)
+	{
+		earlyAbandon = on;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns index of converged model with lowest inertia, -1 if none have converged
+	 * @return int
+	 */
+	public int getBestModel()
+	{
+		int best = -1;
+		for (int r=0; r<numberModels; r++)
+			if (converged[r] && (best < 0 || inertia[r] < inertia[best]))
+				best = r;
+		return best;
+	}
+
+	/**
+	 * Returns whether a model converged or ran out of iterations, rather than being abandoned
+	 * @param r - integer model index
+	 * @return boolean
+	 */
+	public boolean isConverged(int r)
+	{
+		return converged[r];
+	}
+
+	/**
+	 * Returns centroids of a model
+	 * @param r - integer model index
+	 * @return double[][]
+	 */
+	public double[][] getCentroids(int r)
+	{
+		double[][] cents = new double[numberCentroids][];
+		for (int c=0; c<numberCentroids; c++)
+		{
+			int offset = (r * numberCentroids + c) * numberCols;
+			cents[c] = Arrays.copyOfRange(centroids, offset, offset + numberCols);
+		}
+		return cents;
+	}
+
+	/**
+	 * Returns labels of a model from its last pass
+	 * @param r - integer model index
+	 * @return int[]
+	 */
+	public int[] getLabels(int r)
+	{
+		return labels[r];
+	}
+
+	/**
+	 * Returns inertia of a model from its last pass
+	 * @param r - integer model index
+	 * @return double
+	 */
+	public double getInertia(int r)
+	{
+		return inertia[r];
+	}
+
+	/**
+	 * Returns number of passes made over the data
+	 * @return int
+	 */
+	public int getNumberPasses()
+	{
+		return numberPasses;
+	}
+
+	/**
+	 * Pass holds one part's sums, counts, inertia and changes for every model, flattened as centroids are
+	 */
+	private static class Pass {
+
+		// Sums of points by model and label
+		double[] sums;
+		double[] counts;
+		double[] inertia;
+		boolean[] changed;
+
+		/**
+		 * Initializes empty sums
+		 * @param m - integer number of models
+		 * @param k - integer number of centroids
+		 * @param d - integer number of dimensions
+		 */
+		Pass(int m, int k, int d)
+		{
+			sums = new double[m * k * d];
+			counts = new double[m * k];
+			inertia = new double[m];
+			changed = new boolean[m];
+		}
+
+		/**
+		 * Adds another part's sums into these
+		 * @param other - Pass to add
+		 * @return Pass - this
+		 */
+		Pass merge(Pass other)
+		{
+			for (int i=0; i<sums.length; i++)
+				sums[i] += other.sums[i];
+			for (int i=0; i<counts.length; i++)
+				counts[i] += other.counts[i];
+			for (int r=0; r<inertia.length; r++)
+			{
+				inertia[r] += other.inertia[r];
+				changed[r] |= other.changed[r];
+			}
+			return this;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package KMeans;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * OffHeapData holds a data set outside the Java heap, so a data set of many gigabytes adds nothing for the
+ * garbage collector to scan or move, and the heap does not need to be sized for it.
+ * Values are kept by rows as native order doubles in one block aligned for vector loads.
+ * Memory belongs to a shared arena, so parallel passes can read it, and is freed all at once when closed
+ * rather than whenever the collector gets to it. Needs the Foreign Function and Memory API of Java 22.
+ * @author Nick Farrenkopf
+ */
+public class OffHeapData implements AutoCloseable {
+
+	// Memory and the arena that frees it
+	private Arena arena;
+	private MemorySegment segment;
+
+	// Shape of data
+	private int numberRows;
+	private int numberCols;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Initializes off heap data of all zeros
+	 * @param rows - integer number of rows
+	 * @param cols - integer number of columns
+	 */
+	public OffHeapData(int rows, int cols)
+	{
+		if (rows < 0 || cols < 0)
+			throw new IllegalArgumentException("Number of rows and columns must not be negative");
+		numberRows = rows;
+		numberCols = cols;
+		arena = Arena.ofShared();
+		segment = arena.allocate(Math.max(1, (long) rows * cols * Double.BYTES), offHeapAlignment);
+	}
+
+	/**
+	 * Returns off heap copy of data rows
+	 * @param rows - double[][] data rows
+	 * @return OffHeapData
+	 */
+	public static OffHeapData fromRows(double[][] rows)
+	{
+		OffHeapData d = new OffHeapData(rows.length, rows.length == 0 ? 0 : rows[0].length);
+		for (int i=0; i<rows.length; i++)
+			d.setRow(i, rows[i]);
+		return d;
+	}
+
+	/**
+	 * Returns off heap copy of a Matrix
+	 * @param m - Matrix of data
+	 * @return OffHeapData
+	 */
+	public static OffHeapData fromMatrix(Matrix m)
+	{
+		OffHeapData d = new OffHeapData(m.numRows(), m.numCols());
+		for (int i=0; i<m.numRows(); i++)
+			for (int j=0; j<m.numCols(); j++)
+				d.setValue(i, j, m.getValue(i, j));
+		return d;
+	}
+
+	/**
+	 * Reads a binary data file straight into off heap memory. The file is mapped and its big endian values copied
+	 * across in one bulk copy, so no part of the data passes through the heap.
+	 * @param path - Path of binary data file
+	 * @return OffHeapData
+	 * @throws IOException if file cannot be read or is not a binary data file
+	 */
+	public static OffHeapData readBinary(Path path) throws IOException
+	{
+		// Shape from header
+		int[] shape = DataFile.readShape(path);
+
+		// Map file for the copy only, then let the mapping go
+		OffHeapData d = new OffHeapData(shape[0], shape[1]);
+		long count = (long) shape[0] * shape[1];
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ); Arena mapping = Arena.ofConfined())
+		{
+			if (channel.size() < DataFile.headerBytes + count * Double.BYTES)
+				throw new IOException("Binary data file is cut short: " + path);
+			MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), mapping);
+			MemorySegment.copy(file, ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN),
+					DataFile.headerBytes, d.segment, ValueLayout.JAVA_DOUBLE, 0, count);
+		} catch (IOException e) {
+			d.close();
+			throw e;
+		}
+		return d;
+	}
+
+	///// VALUE METHODS /////
+
+	/**
+	 * Returns value at a row and column
+	 * @param i - integer row
+	 * @param j - integer column
+	 * @return double
+	 */
+	public double getValue(int i, int j)
+	{
+		return segment.getAtIndex(ValueLayout.JAVA_DOUBLE, (long) i * numberCols + j);
+	}
+
+	/**
+	 * Sets value at a row and column
+	 * @param i - integer row
+	 * @param j - integer column
+	 * @param v - double value
+	 */
+	public void setValue(int i, int j, double v)
+	{
+		segment.setAtIndex(ValueLayout.JAVA_DOUBLE, (long) i * numberCols + j, v);
+	}
+
+	/**
+	 * Copies a row into a heap array
+	 * @param i - integer row
+	 * @param row - double[] array of at least number of columns to copy into
+	 */
+	public void getRow(int i, double[] row)
+	{
+		MemorySegment.copy(segment, ValueLayout.JAVA_DOUBLE, (long) i * numberCols * Double.BYTES, row, 0, numberCols);
+	}
+
+	/**
+	 * Copies a heap array into a row
+	 * @param i - integer row
+	 * @param row - double[] values of row
+	 */
+	public void setRow(int i, double[] row)
+	{
+		MemorySegment.copy(row, 0, segment, ValueLayout.JAVA_DOUBLE, (long) i * numberCols * Double.BYTES, numberCols);
+	}
+
+	///// DISTANCE METHODS /////
+
+	/**
+	 * Returns squared distance between a row and a point, read in place
+	 * @param i - integer row
+	 * @param point - double[] point
+	 * @return double
+	 */
+	public double squaredDistance(int i, double[] point)
+	{
+		long base = (long) i * numberCols;
+		double sum = 0, diff;
+		for (int j=0; j<numberCols; j++)
+		{
+			diff = segment.getAtIndex(ValueLayout.JAVA_DOUBLE, base + j) - point[j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns index of closest point to a row, first one if tied
+	 * @param i - integer row
+	 * @param points - double[][] points
+	 * @return int
+	 */
+	public int closest(int i, double[][] points)
+	{
+		int minIndex = 0;
+		double minDist = squaredDistance(i, points[0]), dist;
+		for (int c=1; c<points.length; c++)
+		{
+			dist = squaredDistance(i, points[c]);
+			if (dist < minDist)
+			{
+				minDist = dist;
+				minIndex = c;
+			}
+		}
+		return minIndex;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns number of rows
+	 * @return int
+	 */
+	public int numRows()
+	{
+		return numberRows;
+	}
+
+	/**
+	 * Returns number of columns
+	 * @return int
+	 */
+	public int numCols()
+	{
+		return numberCols;
+	}
+
+	/**
+	 * Returns memory segment holding values by rows
+	 * @return MemorySegment
+	 */
+	public MemorySegment getSegment()
+	{
+		return segment;
+	}
+
+	/**
+	 * Frees memory. Data must not be used afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		arena.close();
+	}
+}
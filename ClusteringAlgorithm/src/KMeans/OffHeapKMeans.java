@@ -0,0 +1,324 @@
+package KMeans;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * OffHeapKMeans runs K Means on off heap data in place. Points are read straight from off heap memory and
+ * labels are kept off heap too, so the heap holds only centroids and per thread sums however large the data is.
+ * Each pass is split into blocks across threads, and each thread sums its blocks into its own sums,
+ * which are merged once at the end of the pass. Converge progress and early abandon are shared with K Means.
+ * Needs the Foreign Function and Memory API of Java 22, as off heap data does.
+ * @author Nick Farrenkopf
+ */
+public class OffHeapKMeans implements AutoCloseable {
+
+	// Data, and label of each point kept off heap
+	private OffHeapData data;
+	private Arena arena;
+	private MemorySegment labels;
+
+	// Centroid variables
+	private int numberCentroids;
+	private double[][] centroids;
+
+	// Results of last pass
+	private double inertia;
+	private boolean converged;
+	private int numberPasses;
+
+	// Seed each restart's random stream is split from, and listener told index of each finished restart
+	private long seed;
+	private boolean earlyAbandon;
+	private IntConsumer restartListener;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes K Means on off heap data with centroids at random data points
+	 * @param data - OffHeapData to cluster, still owned by caller
+	 * @param numCentroids - integer number of centroids
+	 */
+	public OffHeapKMeans(OffHeapData data, int numCentroids)
+	{
+		if (numCentroids < 1 || numCentroids > data.numRows())
+			throw new IllegalArgumentException("Number of centroids must be between 1 and number of data points");
+		this.data = data;
+		numberCentroids = numCentroids;
+		seed = new Random().nextLong();
+		arena = Arena.ofShared();
+		labels = arena.allocate(Math.max(1, (long) data.numRows() * Integer.BYTES), offHeapAlignment);
+		randomizeCentroids(new Random());
+	}
+
+	///// K MEANS METHODS /////
+
+	/**
+	 * Initialize all centroids to distinct random data points, and forget labels of earlier passes
+	 * @param rand - Random to pick with
+	 */
+	private void randomizeCentroids(Random rand)
+	{
+		// Choose random number until not in indexes, then add to indexes
+		ArrayList<Integer> indexes = new ArrayList<>();
+		HashSet<Integer> chosen = new HashSet<>();
+		int newIndex;
+		while (indexes.size() != numberCentroids)
+		{
+			newIndex = rand.nextInt(data.numRows());
+			if (chosen.add(newIndex))
+				indexes.add(newIndex);
+		}
+
+		// Set centroids to random vertices
+		centroids = new double[numberCentroids][data.numCols()];
+		for (int c=0; c<numberCentroids; c++)
+			data.getRow(indexes.get(c), centroids[c]);
+		labels.fill((byte) -1);
+		converged = false;
+	}
+
+	/**
+	 * Runs one pass over the data, labeling each point with its closest centroid and summing points by label
+	 * @return Pass - sums, counts and inertia of the pass
+	 */
+	private Pass assign()
+	{
+		int numBlocks = (data.numRows() + offHeapBlockSize - 1) / offHeapBlockSize;
+		Pass pass = IntStream.range(0, numBlocks).parallel().collect(() -> new Pass(numberCentroids, data.numCols()),
+				this::assignBlock, Pass::merge);
+		inertia = pass.inertia;
+		numberPasses++;
+		return pass;
+	}
+
+	/**
+	 * Labels one block of points and adds them to a thread's sums
+	 * @param pass - Pass of the thread
+	 * @param b - integer block index
+	 */
+	private void assignBlock(Pass pass, int b)
+	{
+		int end = Math.min(data.numRows(), (b + 1) * offHeapBlockSize);
+		int label;
+		for (int i=b*offHeapBlockSize; i<end; i++)
+		{
+			// Find closest centroid, noting if label changed
+			label = data.closest(i, centroids);
+			if (label != labels.getAtIndex(ValueLayout.JAVA_INT, i))
+			{
+				labels.setAtIndex(ValueLayout.JAVA_INT, i, label);
+				pass.changed = true;
+			}
+
+			// Add point to its centroid's sum
+			for (int j=0; j<data.numCols(); j++)
+				pass.sums[label][j] += data.getValue(i, j);
+			pass.counts[label]++;
+			pass.inertia += data.squaredDistance(i, centroids[label]);
+		}
+	}
+
+	/**
+	 * Runs one iteration of K Means, labeling points then moving each centroid to the mean of its points.
+	 * Converged once a pass changes no labels.
+	 */
+	public void Iterate()
+	{
+		Pass pass = assign();
+		for (int c=0; c<numberCentroids; c++)
+			if (pass.counts[c] != 0)
+				for (int j=0; j<data.numCols(); j++)
+					centroids[c][j] = pass.sums[c][j] / pass.counts[c];
+		converged = !pass.changed;
+	}
+
+	/**
+	 * Iterates K Means until converged or out of iterations
+	 */
+	public void converge()
+	{
+		converge(Double.MAX_VALUE);
+	}
+
+	/**
+	 * Iterates K Means until converged. With early abandon on, gives up once converge progress judges the run
+	 * unlikely to beat the given inertia, as converge in K Means does.
+	 * @param bestInertia - inertia of best run so far
+	 * @return boolean - true if converged (or out of iterations), false if abandoned
+	 */
+	private boolean converge(double bestInertia)
+	{
+		// Inertia before the first pass is not known
+		ConvergeProgress progress = new ConvergeProgress(Double.NaN);
+		while (!converged && progress.hasIterationsLeft())
+		{
+			Iterate();
+			if (!converged && progress.abandon(inertia, bestInertia, earlyAbandon))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs a number of restarts, keeping the converged centroids with the lowest inertia.
+	 * With early abandon on, runs that look worse than the best are given up early, and each restart draws from
+	 * its own random stream split from the seed, as run all in K Means does.
+	 */
+	public void runAll()
+	{
+		// Best centroids found so far
+		double[][] bestCents = null;
+		double bestInertia = Double.MAX_VALUE;
+		for (int i=0; i<maxNumberIterations; i++)
+		{
+			randomizeCentroids(new Random(new SplittableRandom(seed + i).nextLong()));
+			if (converge(bestInertia) && inertia < bestInertia * (1 - epsilon))
+			{
+				bestCents = centroids;
+				bestInertia = inertia;
+			}
+			if (restartListener != null)
+				restartListener.accept(i);
+		}
+
+		// Label points by best centroids
+		centroids = bestCents;
+		assign();
+		converged = true;
+	}
+
+	///// SETTERS /////
+
+	/**
+	 * Sets seed of restarts in run all, so the same seed on the same data gives the same result
+	 * @param s - long seed
+	 */
+	public void setSeed(long s)
+	{
+		seed = s;
+	}
+
+	/**
+	 * Sets whether run all gives up restarts whose extrapolated inertia looks worse than the best, as in K Means.
+	 * Off by default.
+	 * @param on - boolean true to give up early
+	 */
+	public void setEarlyAbandon(boolean on)
+	{
+		earlyAbandon = on;
+	}
+
+	/**
+	 * Sets listener told the index of each restart run all finishes. A listener may throw to stop run all early.
+	 * @param listener - IntConsumer of restart index, null for none
+	 */
+	public void setRestartListener(IntConsumer listener)
+	{
+		restartListener = listener;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns centroids
+	 * @return Matrix
+	 */
+	public Matrix getCentroids()
+	{
+		return Vectors.toMatrix(centroids);
+	}
+
+	/**
+	 * Returns label of a data point from the last pass
+	 * @param i - integer index of data point
+	 * @return int
+	 */
+	public int getLabel(int i)
+	{
+		return labels.getAtIndex(ValueLayout.JAVA_INT, i);
+	}
+
+	/**
+	 * Returns inertia of last pass
+	 * @return double
+	 */
+	public double getInertia()
+	{
+		return inertia;
+	}
+
+	/**
+	 * Returns whether last pass changed no labels
+	 * @return boolean
+	 */
+	public boolean isConverged()
+	{
+		return converged;
+	}
+
+	/**
+	 * Returns number of passes made over the data
+	 * @return int
+	 */
+	public int getNumberPasses()
+	{
+		return numberPasses;
+	}
+
+	/**
+	 * Frees labels. Data is left open for its owner to close.
+	 */
+	@Override
+	public void close()
+	{
+		arena.close();
+	}
+
+	/**
+	 * Pass holds one thread's sums, counts and inertia for a pass over its blocks
+	 */
+	private static class Pass {
+
+		// Sums of points by label
+		double[][] sums;
+		double[] counts;
+		double inertia;
+		boolean changed;
+
+		/**
+		 * Initializes empty sums
+		 * @param k - integer number of centroids
+		 * @param d - integer number of dimensions
+		 */
+		Pass(int k, int d)
+		{
+			sums = new double[k][d];
+			counts = new double[k];
+		}
+
+		/**
+		 * Adds another thread's sums into these
+		 * @param other - Pass to add
+		 */
+		void merge(Pass other)
+		{
+			for (int c=0; c<sums.length; c++)
+			{
+				for (int j=0; j<sums[c].length; j++)
+					sums[c][j] += other.sums[c][j];
+				counts[c] += other.counts[c];
+			}
+			inertia += other.inertia;
+			changed |= other.changed;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package KMeans;
+import static KMeans.Constants.*;
+
+/**
+ * OverRelaxation proposes centroid updates that go further than plain K Means. A plain step moves each centroid
+ * to the mean of its points, and while centroids keep moving the same way it usually stops short.
+ * The proposal moves centroids step size times as far, and the step size grows after every proposal that is kept
+ * and drops back to one after a proposal that is not, so it grows while the path is straight and resets at turns.
+ * The proposal is only a proposal: K Means checks it and falls back to the plain step if it is no better.
+ * @author Nick Farrenkopf
+ */
+public class OverRelaxation {
+
+	// Step size of next proposal over the plain step
+	private double step;
+
+	// Step statistics
+	private int accepted;
+	private int rejected;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes with plain step size
+	 */
+	public OverRelaxation()
+	{
+		step = 1;
+	}
+
+	///// RELAXATION METHODS /////
+
+	/**
+	 * Returns proposed centroids, moved step size times as far as the plain step
+	 * @param current - double[] current centroids by rows
+	 * @param means - double[] plain step centroids by rows
+	 * @return double[]
+	 */
+	public double[] next(double[] current, double[] means)
+	{
+		step = Math.min(step * relaxGrowth, maxRelaxation);
+		double[] next = new double[current.length];
+		for (int j=0; j<next.length; j++)
+			next[j] = current[j] + step * (means[j] - current[j]);
+		return next;
+	}
+
+	/**
+	 * Records whether the last proposal was kept, dropping step size back to one if it was not
+	 * @param taken - boolean whether proposal lowered inertia
+	 */
+	public void record(boolean taken)
+	{
+		if (taken)
+			accepted++;
+		else {
+			rejected++;
+			step = 1;
+		}
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns step size of last proposal, one after a fall back
+	 * @return double
+	 */
+	public double getStep()
+	{
+		return step;
+	}
+
+	/**
+	 * Sets step size of last proposal, such as when resuming from a checkpoint
+	 * @param s - double step size, at least one
+	 */
+	public void setStep(double s)
+	{
+		if (s < 1)
+			throw new IllegalArgumentException("Step size must be at least one");
+		step = s;
+	}
+
+	/**
+	 * Returns number of proposals kept
+	 * @return int
+	 */
+	public int getAccepted()
+	{
+		return accepted;
+	}
+
+	/**
+	 * Returns number of proposals that fell back to the plain step
+	 * @return int
+	 */
+	public int getRejected()
+	{
+		return rejected;
+	}
+}
@@ -0,0 +1,174 @@
+package KMeans;
+import java.util.Arrays;
+
+/**
+ * PartialDistanceAssigner finds closest centroids while summing as few dimensions as it can. Dimensions are
+ * visited in order of decreasing variance, found once when the assigner is made, so the sum grows fastest early.
+ * A centroid is given up as soon as its partial sum is more than the best distance so far, since adding more
+ * squared differences can only make it bigger. Labels stay exact: no centroid is skipped that could be closer.
+ * Ties go to the current centroid, then the smaller index, so labels match checking every centroid.
+ * @author Nick Farrenkopf
+ */
+public class PartialDistanceAssigner {
+
+	// Data vectors with columns in visiting order
+	private double[][] data;
+	private int[] order;
+
+	// Pruning statistics of last pass
+	private long dimensionCount;
+	private long possibleCount;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes assigner over data, ordering dimensions by decreasing variance
+	 * @param rows - double[][] data rows
+	 */
+	public PartialDistanceAssigner(double[][] rows)
+	{
+		this(rows, new ColumnStats(rows).getVarianceOrder());
+	}
+
+	/**
+	 * Initializes assigner over data with a given dimension order
+	 * @param rows - double[][] data rows
+	 * @param order - int[] dimensions in visiting order
+	 */
+	public PartialDistanceAssigner(double[][] rows, int[] order)
+	{
+		this.order = order;
+		data = new double[rows.length][];
+		for (int i=0; i<rows.length; i++)
+			data[i] = permute(rows[i]);
+	}
+
+	///// ASSIGNMENT METHODS /////
+
+	/**
+	 * Updates labels to closest centroid, also giving each point's distance to it and a lower bound on its distance
+	 * to every other centroid
+	 * @param centroids - double[][] current centroids
+	 * @param labels - int[] labels to update, current labels on input
+	 * @param minDists - double[] to fill with squared distance to closest centroid
+	 * @param secondDists - double[] to fill with lower bound on squared distance to any other centroid
+	 * @return int - number of labels changed
+	 */
+	public int assign(double[][] centroids, int[] labels, double[] minDists, double[] secondDists)
+	{
+		// Centroids in the same column order as data
+		double[][] cents = new double[centroids.length][];
+		for (int c=0; c<centroids.length; c++)
+			cents[c] = permute(centroids[c]);
+		dimensionCount = 0;
+		possibleCount = (long) data.length * centroids.length * order.length;
+
+		int changed = 0;
+		for (int i=0; i<data.length; i++)
+		{
+			// Current centroid is summed fully to start the best distance
+			int old = labels[i];
+			int best = old;
+			double bestDist = partialDistance(data[i], cents[old], Double.MAX_VALUE);
+			double second = Double.MAX_VALUE, dist;
+			for (int c=0; c<cents.length; c++)
+			{
+				if (c == old)
+					continue;
+
+				// Partial sum that passed the best is still a lower bound on the full distance
+				dist = partialDistance(data[i], cents[c], bestDist);
+				if (dist < bestDist)
+				{
+					second = bestDist;
+					best = c;
+					bestDist = dist;
+				} else
+					second = Math.min(second, dist);
+			}
+
+			// Update label
+			if (best != old)
+			{
+				labels[i] = best;
+				changed++;
+			}
+			minDists[i] = bestDist;
+			secondDists[i] = second;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns squared distance in visiting order, stopping once it is larger than a limit
+	 * @param point - double[] permuted data point
+	 * @param centroid - double[] permuted centroid
+	 * @param limit - double squared distance to beat
+	 * @return double - full squared distance, or partial sum larger than limit
+	 */
+	private double partialDistance(double[] point, double[] centroid, double limit)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<point.length; j++)
+		{
+			diff = point[j] - centroid[j];
+			sum += diff * diff;
+			if (sum > limit)
+			{
+				dimensionCount += j + 1;
+				return sum;
+			}
+		}
+		dimensionCount += point.length;
+		return sum;
+	}
+
+	/**
+	 * Returns vector with columns in visiting order
+	 * @param v - double[] vector
+	 * @return double[]
+	 */
+	private double[] permute(double[] v)
+	{
+		double[] p = new double[order.length];
+		for (int j=0; j<order.length; j++)
+			p[j] = v[order[j]];
+		return p;
+	}
+
+	/**
+	 * Returns dimensions sorted by decreasing variance, smaller index first on ties
+	 * @param var - double[] variance of each dimension
+	 * @return int[]
+	 */
+	public static int[] sortByVariance(double[] var)
+	{
+		Integer[] order = new Integer[var.length];
+		for (int j=0; j<var.length; j++)
+			order[j] = j;
+		Arrays.sort(order, (a, b) -> Double.compare(var[b], var[a]));
+		return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns fraction of dimension differences skipped in last pass compared to summing every dimension
+	 * @return double
+	 */
+	public double getPruningRate()
+	{
+		if (possibleCount == 0)
+			return 0;
+		return 1 - (double) dimensionCount / possibleCount;
+	}
+
+	/**
+	 * Returns dimensions in visiting order
+	 * @return int[]
+	 */
+	public int[] getOrder()
+	{
+		return order;
+	}
+}
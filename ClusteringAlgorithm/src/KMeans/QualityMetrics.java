@@ -0,0 +1,328 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.IntStream;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * QualityMetrics scores a clustering from its data, labels and centroids without copying them.
+ * The simplified silhouette, Davies-Bouldin and Calinski-Harabasz indexes only need distances to centroids,
+ * so they are found together in one parallel pass. The exact silhouette needs every pairwise distance,
+ * so it is estimated from a sample stratified by cluster, with a confidence interval.
+ * @author Nick Farrenkopf
+ */
+public class QualityMetrics {
+
+	// Clustering to score
+	private Matrix data;
+	private int[] labels;
+	private Matrix centroids;
+
+	// Centroid based metrics
+	private double simplifiedSilhouette;
+	private double daviesBouldin;
+	private double calinskiHarabasz;
+
+	// Sampled silhouette and confidence interval
+	private double silhouetteEstimate;
+	private double silhouetteLow;
+	private double silhouetteHigh;
+
+	///// CONSTRUCTORS /////
+
+	/**
+	 * Scores the current clustering of a K Means variable
+	 * @param km - KMeans to score
+	 */
+	public QualityMetrics(KMeans km)
+	{
+		this(km.getData(), km.getDataCentroidIndex(), km.getCentroids());
+	}
+
+	/**
+	 * Scores a clustering, finding the centroid based metrics right away
+	 * @param data - Matrix of data
+	 * @param labels - int[] centroid index of each point
+	 * @param centroids - Matrix of centroids
+	 */
+	public QualityMetrics(Matrix data, int[] labels, Matrix centroids)
+	{
+		this.data = data;
+		this.labels = labels;
+		this.centroids = centroids;
+		silhouetteEstimate = Double.NaN;
+		silhouetteLow = Double.NaN;
+		silhouetteHigh = Double.NaN;
+		computeCentroidMetrics();
+	}
+
+	///// METRIC METHODS /////
+
+	/**
+	 * Finds simplified silhouette, Davies-Bouldin and Calinski-Harabasz in one pass over the data.
+	 * The data is split in blocks, each block sums into its own accumulator, and accumulators are merged.
+	 */
+	private void computeCentroidMetrics()
+	{
+		int n = data.numRows();
+		int k = centroids.numRows();
+		int d = data.numCols();
+		int numBlocks = (n + metricsBlockSize - 1) / metricsBlockSize;
+
+		// Each block sums silhouette, inertia, distance to own centroid per cluster, counts, and point coordinates
+		double[][] partial = new double[numBlocks][];
+		IntStream.range(0, numBlocks).parallel().forEach(b -> {
+			double[] acc = new double[2 + 2 * k + d];
+			double own, other, dist;
+			int label;
+			for (int i=b*metricsBlockSize; i<Math.min(n, (b + 1) * metricsBlockSize); i++)
+			{
+				// Distance to own centroid and closest other centroid
+				label = labels[i];
+				own = Math.sqrt(distance(i, label));
+				other = Double.MAX_VALUE;
+				for (int c=0; c<k; c++)
+					if (c != label)
+					{
+						dist = distance(i, c);
+						if (dist < other)
+							other = dist;
+					}
+				other = Math.sqrt(other);
+				if (k > 1 && Math.max(own, other) > 0)
+					acc[0] += (other - own) / Math.max(own, other);
+				acc[1] += own * own;
+				acc[2 + label] += own;
+				acc[2 + k + label]++;
+				for (int j=0; j<d; j++)
+					acc[2 + 2 * k + j] += data.getValue(i, j);
+			}
+			partial[b] = acc;
+		});
+
+		// Merge accumulators
+		double[] total = new double[2 + 2 * k + d];
+		for (double[] acc:partial)
+			for (int j=0; j<total.length; j++)
+				total[j] += acc[j];
+		simplifiedSilhouette = n > 0 ? total[0] / n : 0;
+
+		// Davies-Bouldin, average over clusters of worst (scatter + scatter) / separation
+		double[] scatter = new double[k];
+		for (int c=0; c<k; c++)
+			scatter[c] = total[2 + k + c] > 0 ? total[2 + c] / total[2 + k + c] : 0;
+		double db = 0, worst, sep;
+		for (int c=0; c<k; c++)
+		{
+			worst = 0;
+			for (int c2=0; c2<k; c2++)
+				if (c2 != c)
+				{
+					sep = Math.sqrt(centroidDistance(c, c2));
+					if (sep > 0)
+						worst = Math.max(worst, (scatter[c] + scatter[c2]) / sep);
+				}
+			db += worst;
+		}
+		daviesBouldin = k > 0 ? db / k : 0;
+
+		// Calinski-Harabasz, between cluster over within cluster dispersion
+		double between = 0, within = total[1], diff;
+		for (int c=0; c<k; c++)
+			for (int j=0; j<d; j++)
+			{
+				diff = centroids.getValue(c, j) - total[2 + 2 * k + j] / n;
+				between += total[2 + k + c] * diff * diff;
+			}
+		calinskiHarabasz = (k > 1 && n > k && within > 0) ? (between / (k - 1)) / (within / (n - k)) : 0;
+	}
+
+	/**
+	 * Estimates the exact silhouette from a sample stratified by cluster. Each cluster gets sample points in
+	 * proportion to its size (at least two if it has them). Each sampled point's silhouette is exact, found from
+	 * its average distance to every point of every cluster. The confidence interval is about 95%.
+	 * @param sampleSize - integer number of points to sample
+	 * @param rand - Random to pick sample
+	 */
+	public void estimateSilhouette(int sampleSize, Random rand)
+	{
+		int n = data.numRows();
+		int k = centroids.numRows();
+
+		// Group points by cluster
+		ArrayList<ArrayList<Integer>> strata = new ArrayList<>();
+		for (int c=0; c<k; c++)
+			strata.add(new ArrayList<>());
+		for (int i=0; i<n; i++)
+			strata.get(labels[i]).add(i);
+		int[] sizes = new int[k];
+		for (int c=0; c<k; c++)
+			sizes[c] = strata.get(c).size();
+
+		// Sample each stratum, weighting its mean by its share of the data
+		double mean = 0, variance = 0;
+		for (int c=0; c<k; c++)
+		{
+			ArrayList<Integer> stratum = strata.get(c);
+			if (stratum.isEmpty())
+				continue;
+			int m = Math.min(stratum.size(), Math.max(2, (int) Math.round((double) sampleSize * stratum.size() / n)));
+			Collections.shuffle(stratum, rand);
+			double[] s = stratum.subList(0, m).parallelStream().mapToDouble(i -> silhouette(i, sizes)).toArray();
+
+			// Stratum mean and variance of the mean
+			double sMean = 0, sVar = 0;
+			for (double v:s)
+				sMean += v;
+			sMean /= m;
+			for (double v:s)
+				sVar += (v - sMean) * (v - sMean);
+			sVar = m > 1 ? sVar / (m - 1) : 0;
+			double weight = (double) stratum.size() / n;
+			mean += weight * sMean;
+			variance += weight * weight * sVar / m * (1 - (double) m / stratum.size());
+		}
+
+		// Confidence interval
+		silhouetteEstimate = mean;
+		silhouetteLow = mean - confidenceZ * Math.sqrt(variance);
+		silhouetteHigh = mean + confidenceZ * Math.sqrt(variance);
+	}
+
+	/**
+	 * Returns exact silhouette of a single point
+	 * @param i - integer index of point
+	 * @param sizes - int[] number of points in each cluster
+	 * @return double
+	 */
+	private double silhouette(int i, int[] sizes)
+	{
+		// Sum distances to points of each cluster
+		double[] sums = new double[sizes.length];
+		for (int i2=0; i2<data.numRows(); i2++)
+			if (i2 != i)
+				sums[labels[i2]] += Math.sqrt(pointDistance(i, i2));
+
+		// Average distance to own cluster and closest other cluster
+		int label = labels[i];
+		if (sizes[label] <= 1)
+			return 0;
+		double a = sums[label] / (sizes[label] - 1);
+		double b = Double.MAX_VALUE;
+		for (int c=0; c<sizes.length; c++)
+			if (c != label && sizes[c] > 0)
+				b = Math.min(b, sums[c] / sizes[c]);
+		if (b == Double.MAX_VALUE)
+			return 0;
+		return (b - a) / Math.max(a, b);
+	}
+
+	/**
+	 * Returns squared distance between a data point and a centroid
+	 * @param i - integer index of data point
+	 * @param c - integer index of centroid
+	 * @return double
+	 */
+	private double distance(int i, int c)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<data.numCols(); j++)
+		{
+			diff = data.getValue(i, j) - centroids.getValue(c, j);
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns squared distance between two data points
+	 * @param i - integer index of first point
+	 * @param i2 - integer index of second point
+	 * @return double
+	 */
+	private double pointDistance(int i, int i2)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<data.numCols(); j++)
+		{
+			diff = data.getValue(i, j) - data.getValue(i2, j);
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns squared distance between two centroids
+	 * @param c - integer index of first centroid
+	 * @param c2 - integer index of second centroid
+	 * @return double
+	 */
+	private double centroidDistance(int c, int c2)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<centroids.numCols(); j++)
+		{
+			diff = centroids.getValue(c, j) - centroids.getValue(c2, j);
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns simplified silhouette, which uses distances to centroids instead of to every point
+	 * @return double - between -1 and 1, higher is better
+	 */
+	public double getSimplifiedSilhouette()
+	{
+		return simplifiedSilhouette;
+	}
+
+	/**
+	 * Returns Davies-Bouldin index
+	 * @return double - lower is better
+	 */
+	public double getDaviesBouldin()
+	{
+		return daviesBouldin;
+	}
+
+	/**
+	 * Returns Calinski-Harabasz index
+	 * @return double - higher is better
+	 */
+	public double getCalinskiHarabasz()
+	{
+		return calinskiHarabasz;
+	}
+
+	/**
+	 * Returns sampled estimate of exact silhouette, NaN until estimated
+	 * @return double
+	 */
+	public double getSilhouetteEstimate()
+	{
+		return silhouetteEstimate;
+	}
+
+	/**
+	 * Returns lower end of silhouette confidence interval, NaN until estimated
+	 * @return double
+	 */
+	public double getSilhouetteLow()
+	{
+		return silhouetteLow;
+	}
+
+	/**
+	 * Returns upper end of silhouette confidence interval, NaN until estimated
+	 * @return double
+	 */
+	public double getSilhouetteHigh()
+	{
+		return silhouetteHigh;
+	}
+}
@@ -0,0 +1,281 @@
+package KMeans;
+import java.util.Arrays;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * QuantizedAssigner finds closest centroids by ruling out far centroids with a one byte copy of the data.
+ * Each value is stored as a signed byte of steps from its column's minimum, each column with its own step that splits
+ * its range into 255, so narrow columns keep as much detail as wide ones whether or not data is standardized.
+ * The distance between the byte copies of a point and a centroid is a sum over bytes weighted by each column's
+ * squared step, reading an eighth of the memory the exact distance does. The distance from each point and centroid
+ * to its byte copy is kept, and by the triangle inequality the true distance is within the sum of those two of the
+ * byte distance. Any centroid whose lowest possible distance is more than the smallest highest possible distance
+ * cannot be closest, so only the rest get exact distances, read from the data itself rather than a copy.
+ * Byte columns are in order of decreasing variance and the current centroid is measured first, so the byte sum
+ * of a far centroid usually passes the bound within a few columns and is given up there, as in partial distance.
+ * Labels stay exact. Ties go to the current centroid, then the smaller index, so labels match checking every centroid.
+ * Only auto mode picks it, from measured work, as on the data measured so far it has not beaten partial distance.
+ * @author Nick Farrenkopf
+ */
+public class QuantizedAssigner {
+
+	// Exact data, of which the first number of rows are points
+	private Matrix data;
+	private int numberRows;
+	private int numberCols;
+
+	// Byte copy flattened by point with columns in visiting order, and each point's distance to its byte copy
+	private byte[] codes;
+	private double[] errors;
+	private int[] order;
+
+	// Column minimums and step of each column, and squared steps in visiting order
+	private double[] offset;
+	private double[] step;
+	private double[] weight;
+
+	// Pruning statistics of last pass
+	private long exactCount;
+	private long byteCount;
+	private long possibleCount;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes assigner over data with a given byte column order, making the byte copy
+	 * @param data - Matrix of data
+	 * @param rows - integer number of rows that are points
+	 * @param order - int[] dimensions in visiting order
+	 */
+	public QuantizedAssigner(Matrix data, int rows, int[] order)
+	{
+		this.data = data;
+		this.order = order;
+		numberRows = rows;
+		numberCols = data.numCols();
+		if ((long) rows * numberCols > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Quantized assignment supports at most " + Integer.MAX_VALUE + " values");
+
+		// Column minimums and maximums
+		offset = new double[numberCols];
+		double[] max = new double[numberCols];
+		Arrays.fill(offset, Double.MAX_VALUE);
+		Arrays.fill(max, -Double.MAX_VALUE);
+		for (int i=0; i<rows; i++)
+			for (int j=0; j<numberCols; j++)
+			{
+				offset[j] = Math.min(offset[j], data.getValue(i, j));
+				max[j] = Math.max(max[j], data.getValue(i, j));
+			}
+
+		// Step that splits each column into 255 steps
+		step = new double[numberCols];
+		weight = new double[numberCols];
+		for (int j=0; j<numberCols; j++)
+			step[j] = max[j] > offset[j] ? (max[j] - offset[j]) / 255 : 1;
+		for (int j=0; j<numberCols; j++)
+			weight[j] = step[order[j]] * step[order[j]];
+
+		// Byte copy of every point
+		codes = new byte[rows * numberCols];
+		errors = new double[rows];
+		double[] row = new double[numberCols];
+		for (int i=0; i<rows; i++)
+		{
+			for (int j=0; j<numberCols; j++)
+				row[j] = data.getValue(i, j);
+			errors[i] = quantize(row, codes, i * numberCols);
+		}
+	}
+
+	///// ASSIGNMENT METHODS /////
+
+	/**
+	 * Updates labels to closest centroid, also giving each point's distance to it and a lower bound on its distance
+	 * to every other centroid
+	 * @param centroids - double[][] current centroids
+	 * @param labels - int[] labels to update, current labels on input
+	 * @param minDists - double[] to fill with squared distance to closest centroid
+	 * @param secondDists - double[] to fill with lower bound on squared distance to any other centroid
+	 * @return int - number of labels changed
+	 */
+	public int assign(double[][] centroids, int[] labels, double[] minDists, double[] secondDists)
+	{
+		// Byte copy of centroids
+		int k = centroids.length;
+		byte[] cents = new byte[k * numberCols];
+		double[] centErrors = new double[k];
+		for (int c=0; c<k; c++)
+			centErrors[c] = quantize(centroids[c], cents, c * numberCols);
+		exactCount = 0;
+		byteCount = 0;
+		possibleCount = (long) numberRows * k;
+
+		int changed = 0;
+		double[] lower = new double[k];
+		for (int i=0; i<numberRows; i++)
+		{
+			// Current centroid's byte distance gives the first bound on how far the closest centroid can be
+			int base = i * numberCols;
+			int old = labels[i];
+			double approx = Math.sqrt(byteDistance(codes, base, cents, old * numberCols, Double.MAX_VALUE));
+			double upper = (approx + errors[i] + centErrors[old]) * (1 + quantizedSlack);
+			lower[old] = (approx - errors[i] - centErrors[old]) * (1 - quantizedSlack);
+
+			// Byte distance to the rest, given up once past what could still be closest
+			double reach;
+			for (int c=0; c<k; c++)
+			{
+				if (c == old)
+					continue;
+				reach = (upper + errors[i] + centErrors[c]) / (1 - quantizedSlack);
+				approx = Math.sqrt(byteDistance(codes, base, cents, c * numberCols, reach * reach));
+				lower[c] = (approx - errors[i] - centErrors[c]) * (1 - quantizedSlack);
+				if (lower[c] <= upper)
+					upper = Math.min(upper, (approx + errors[i] + centErrors[c]) * (1 + quantizedSlack));
+			}
+
+			// Exact distance to centroids that could be closest, current centroid first to start the best distance
+			int best = old;
+			double bestDist = Double.MAX_VALUE, second = Double.MAX_VALUE, dist;
+			for (int t=-1; t<k; t++)
+			{
+				int c = t < 0 ? old : t;
+				if (t >= 0 && c == old)
+					continue;
+
+				// Lowest possible distance past the highest possible closest one rules centroid out
+				if (lower[c] > upper)
+				{
+					second = Math.min(second, lower[c] * lower[c]);
+					continue;
+				}
+				dist = distance(i, centroids[c]);
+				exactCount++;
+				if (dist < bestDist)
+				{
+					second = Math.min(second, bestDist);
+					best = c;
+					bestDist = dist;
+				} else
+					second = Math.min(second, dist);
+			}
+
+			// Update label
+			if (best != old)
+			{
+				labels[i] = best;
+				changed++;
+			}
+			minDists[i] = bestDist;
+			secondDists[i] = second;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns squared distance between two byte vectors, each column's squared byte difference times its squared step,
+	 * checked against a limit after each chunk of columns and given up once past it
+	 * @param a - byte[] first vectors
+	 * @param aBase - integer start of first vector
+	 * @param b - byte[] second vectors
+	 * @param bBase - integer start of second vector
+	 * @param limit - double squared distance to stop past
+	 * @return double - full squared distance, or partial sum past limit
+	 */
+	private double byteDistance(byte[] a, int aBase, byte[] b, int bBase, double limit)
+	{
+		double sum = 0;
+		int diff, end;
+		for (int start=0; start<numberCols; start+=quantizedChunk)
+		{
+			end = Math.min(numberCols, start + quantizedChunk);
+			for (int j=start; j<end; j++)
+			{
+				diff = a[aBase + j] - b[bBase + j];
+				sum += weight[j] * (diff * diff);
+			}
+			if (sum > limit)
+			{
+				byteCount += end;
+				return sum;
+			}
+		}
+		byteCount += numberCols;
+		return sum;
+	}
+
+	/**
+	 * Returns exact squared distance from a data point to a centroid
+	 * @param i - integer index of data point
+	 * @param centroid - double[] centroid
+	 * @return double
+	 */
+	private double distance(int i, double[] centroid)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<numberCols; j++)
+		{
+			diff = data.getValue(i, j) - centroid[j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Writes byte copy of a vector, clamped to the column ranges
+	 * @param v - double[] vector
+	 * @param out - byte[] to write to
+	 * @param base - integer start of vector in out
+	 * @return double - distance from vector to its byte copy
+	 */
+	private double quantize(double[] v, byte[] out, int base)
+	{
+		double err = 0, diff;
+		long q;
+		int col;
+		for (int j=0; j<numberCols; j++)
+		{
+			col = order[j];
+			q = Math.max(0, Math.min(255, Math.round((v[col] - offset[col]) / step[col])));
+			out[base + j] = (byte) (q - 128);
+			diff = v[col] - (offset[col] + q * step[col]);
+			err += diff * diff;
+		}
+		return Math.sqrt(err);
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns fraction of exact point to centroid distances skipped in last pass
+	 * @return double
+	 */
+	public double getPruningRate()
+	{
+		if (possibleCount == 0)
+			return 0;
+		return 1 - (double) exactCount / possibleCount;
+	}
+
+	/**
+	 * Returns fraction of byte differences skipped in last pass compared to summing every column of every centroid
+	 * @return double
+	 */
+	public double getBytePruningRate()
+	{
+		if (possibleCount == 0)
+			return 0;
+		return 1 - (double) byteCount / (possibleCount * numberCols);
+	}
+
+	/**
+	 * Returns bytes held by the byte copy and its errors
+	 * @return long
+	 */
+	public long getBytes()
+	{
+		return codes.length + 8L * errors.length;
+	}
+}
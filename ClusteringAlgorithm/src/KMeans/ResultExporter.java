@@ -0,0 +1,302 @@
+package KMeans;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static KMeans.Constants.*;
+
+/**
+ * ResultExporter streams each point's label and distance to its centroid, then the centroids, to files in a folder
+ * while the labeling pass that finds them runs. Each file has two buffers: the pass fills one while an I/O thread
+ * writes the other to the file's channel, so writing overlaps labeling and only waits when the disk falls behind.
+ * Memory is the buffers alone however many points there are, with no second copy of labels or distances.
+ * Text files hold one value per line. Binary files use the binary data layout, distances as one column of doubles,
+ * and labels the same header with its own magic number followed by big endian ints. Binary headers are written
+ * last, once the number of points is known.
+ * @author Nick Farrenkopf
+ */
+public class ResultExporter implements AutoCloseable {
+
+	// Label file header, as the binary data header with its own magic number
+	private static final int labelMagic = 0x4B4D4C42;
+	private static final int labelVersion = 1;
+
+	// Files being written
+	private Path directory;
+	private boolean binary;
+	private Output labels;
+	private Output distances;
+
+	// I/O thread and the centroid write in flight, null if none
+	private ExecutorService executor;
+	private Future<?> centroidWrite;
+
+	// First write failure, kept until close
+	private IOException failure;
+
+	// Reused for formatting text lines
+	private StringBuilder line;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes exporter, creating the folder if needed and opening the label and distance files
+	 * @param directory - Path of folder to write files in
+	 * @param binary - boolean true for binary files, false for text
+	 * @throws IOException if files cannot be opened
+	 */
+	public ResultExporter(Path directory, boolean binary) throws IOException
+	{
+		this.directory = directory;
+		this.binary = binary;
+		line = new StringBuilder();
+		Files.createDirectories(directory);
+		executor = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "result-exporter");
+			t.setDaemon(true);
+			return t;
+		});
+		labels = new Output(file("labels"), labelMagic, labelVersion);
+		try
+		{
+			distances = new Output(file("distances"), DataFile.magic, DataFile.version);
+		} catch (IOException e) {
+			labels.channel.close();
+			executor.shutdown();
+			throw e;
+		}
+	}
+
+	///// WRITE METHODS /////
+
+	/**
+	 * Adds the next point's label and distance to its centroid
+	 * @param label - integer index of centroid
+	 * @param distance - double distance to centroid
+	 */
+	public void writePoint(int label, double distance)
+	{
+		// Fixed width values in binary
+		if (binary)
+		{
+			labels.room(Integer.BYTES).putInt(label);
+			distances.room(Double.BYTES).putDouble(distance);
+			labels.count++;
+			distances.count++;
+			return;
+		}
+
+		// One value per line in text
+		line.setLength(0);
+		labels.putLine(line.append(label));
+		line.setLength(0);
+		distances.putLine(line.append(distance));
+	}
+
+	/**
+	 * Writes centroids on the I/O thread, in the data file layout. Centroids are copied, so may change afterwards.
+	 * @param centroids - double[][] centroids
+	 */
+	public void writeCentroids(double[][] centroids)
+	{
+		double[][] copy = new double[centroids.length][];
+		for (int c=0; c<centroids.length; c++)
+			copy[c] = centroids[c].clone();
+		Path path = file("centroids");
+		centroidWrite = executor.submit(() -> {
+			try
+			{
+				if (binary)
+					DataFile.writeBinary(copy, path);
+				else
+					DataFile.writeText(copy, path);
+			} catch (IOException e) {
+				fail(e);
+			}
+		});
+	}
+
+	/**
+	 * Writes what is left in the buffers, then the binary headers, waits for the I/O thread and closes the files
+	 * @throws IOException if any file could not be written
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			labels.finish();
+			distances.finish();
+			await(centroidWrite);
+		} finally {
+			executor.shutdown();
+			labels.channel.close();
+			distances.channel.close();
+		}
+		synchronized (this)
+		{
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	/**
+	 * Returns path of an output file in the folder
+	 * @param name - String name of file without extension
+	 * @return Path
+	 */
+	private Path file(String name)
+	{
+		return directory.resolve(name + (binary ? ".bin" : ".txt"));
+	}
+
+	/**
+	 * Waits for a write on the I/O thread
+	 * @param write - Future of write, null if none
+	 */
+	private void await(Future<?> write)
+	{
+		if (write == null)
+			return;
+		try
+		{
+			write.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(new IOException("Interrupted while exporting results", e));
+		} catch (ExecutionException e) {
+			fail(new IOException("Result exporter failed", e.getCause()));
+		}
+	}
+
+	/**
+	 * Keeps the first write failure, after which no more buffers are written
+	 * @param e - IOException of failure
+	 */
+	private synchronized void fail(IOException e)
+	{
+		if (failure == null)
+			failure = e;
+	}
+
+	/**
+	 * Returns whether a write has failed
+	 * @return boolean
+	 */
+	private synchronized boolean failed()
+	{
+		return failure != null;
+	}
+
+	/**
+	 * Output is one file with the buffer being filled and the buffer being written
+	 */
+	private class Output {
+
+		// File, and header written at its start in binary
+		FileChannel channel;
+		int magic;
+		int version;
+
+		// Buffer being filled, and write of the other one in flight, null if none
+		ByteBuffer[] buffers;
+		int current;
+		Future<?> pending;
+
+		// Number of values added
+		int count;
+
+		/**
+		 * Opens file, leaving room for the header in binary
+		 * @param path - Path of file
+		 * @param magic - integer magic number of binary header
+		 * @param version - integer version of binary header
+		 * @throws IOException if file cannot be opened
+		 */
+		Output(Path path, int magic, int version) throws IOException
+		{
+			this.magic = magic;
+			this.version = version;
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			if (binary)
+				channel.position(DataFile.headerBytes);
+			buffers = new ByteBuffer[] {ByteBuffer.allocateDirect(exportBufferBytes),
+					ByteBuffer.allocateDirect(exportBufferBytes)};
+		}
+
+		/**
+		 * Returns buffer being filled with at least some bytes free, handing it to the I/O thread first if full
+		 * @param bytes - integer bytes needed
+		 * @return ByteBuffer
+		 */
+		ByteBuffer room(int bytes)
+		{
+			if (buffers[current].remaining() < bytes)
+				hand();
+			return buffers[current];
+		}
+
+		/**
+		 * Adds a line of ASCII text
+		 * @param text - StringBuilder line without line break
+		 */
+		void putLine(StringBuilder text)
+		{
+			ByteBuffer buffer = room(text.length() + 2);
+			for (int j=0; j<text.length(); j++)
+				buffer.put((byte) text.charAt(j));
+			buffer.put((byte) '\r').put((byte) '\n');
+			count++;
+		}
+
+		/**
+		 * Hands buffer being filled to the I/O thread once the other one is written, then fills the other one
+		 */
+		void hand()
+		{
+			// Other buffer must be written before it is filled again
+			await(pending);
+			pending = null;
+			ByteBuffer full = buffers[current];
+			full.flip();
+			if (full.hasRemaining() && !failed())
+				pending = executor.submit(() -> {
+					try
+					{
+						while (full.hasRemaining())
+							channel.write(full);
+					} catch (IOException e) {
+						fail(e);
+					}
+				});
+			current = 1 - current;
+			buffers[current].clear();
+		}
+
+		/**
+		 * Writes what is left, then the header now the number of values is known
+		 * @throws IOException if header cannot be written
+		 */
+		void finish() throws IOException
+		{
+			hand();
+			await(pending);
+			pending = null;
+			if (!binary || failed())
+				return;
+
+			// Header of count rows in one column
+			ByteBuffer header = ByteBuffer.allocate(DataFile.headerBytes);
+			header.putInt(magic).putInt(version).putInt(count).putInt(1).flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * SolutionTable counts how often converged centroids appear over many K Means runs.
+ * Centroids are sorted by rows so order does not matter, then each value is quantized to a grid cell
+ * and the cells are hashed into a signature. Two solutions match if their squared difference is below epsilon,
+ * so each value differs by less than the square root of epsilon, the tolerance. Cells are signature cell scale
+ * tolerances wide, so whatever the range of the data, few values fall within a tolerance of a cell edge.
+ * Those values could match a solution in the neighboring cell, so those neighbor signatures are probed as well,
+ * each found from the first signature by changing only the moved cells' terms.
+ * Each lookup costs O(k*d) instead of comparing against every solution seen so far, unless more than max signature
+ * edges values are near an edge, when every solution is compared.
+ * @author Nick Farrenkopf
+ */
+public class SolutionTable {
+
+	// Multiplier of signature hash
+	private static final long signaturePrime = 31;
+
+	// Solutions in order they were first seen, and how often each was seen again
+	private ArrayList<Matrix> solutions;
+	private ArrayList<Integer> counters;
+
+	// Signature to indexes of solutions with that signature
+	private HashMap<Long, ArrayList<Integer>> buckets;
+
+	// Largest distance a value can be from its match, and width of a grid cell
+	private double tolerance;
+	private double cellWidth;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes an empty solution table
+	 */
+	public SolutionTable()
+	{
+		solutions = new ArrayList<>();
+		counters = new ArrayList<>();
+		buckets = new HashMap<>();
+		tolerance = Math.sqrt(epsilon);
+		cellWidth = tolerance * signatureCellScale;
+	}
+
+	///// TABLE METHODS /////
+
+	/**
+	 * Adds converged centroids to table. If any stored solution is within epsilon, their counters are increased
+	 * once each, otherwise centroids are stored as a new solution.
+	 * @param centroids - Matrix of converged centroids
+	 */
+	public void add(Matrix centroids)
+	{
+		// Canonical order and grid cells
+		Matrix cents = centroids.sortByRows();
+		long[] cells = new long[cents.numRows() * cents.numCols()];
+		ArrayList<Integer> edges = new ArrayList<>();
+		double value, cell;
+		for (int i=0; i<cents.numRows(); i++)
+			for (int j=0; j<cents.numCols(); j++)
+			{
+				// Find cell, remembering values close to an edge
+				value = cents.getValue(i, j) / cellWidth;
+				cell = Math.floor(value);
+				cells[i * cents.numCols() + j] = (long) cell;
+				if ((value - cell) * cellWidth < tolerance || (cell + 1 - value) * cellWidth < tolerance)
+					edges.add(i * cents.numCols() + j);
+			}
+		long signature = signature(cells);
+
+		// Too many edge values to probe, so compare against everything
+		HashSet<Integer> candidates = new HashSet<>();
+		if (edges.size() > maxSignatureEdges)
+		{
+			for (int j=0; j<solutions.size(); j++)
+				candidates.add(j);
+		}
+
+		// Probe every combination of edge values moved to their neighboring cell, gathering each solution once
+		else {
+			long[] shift = new long[edges.size()];
+			for (int b=0; b<edges.size(); b++)
+				shift[b] = neighborCell(cents, edges.get(b), cells[edges.get(b)]) * weight(edges.get(b), cells.length);
+			long probe;
+			for (int mask=0; mask<(1 << edges.size()); mask++)
+			{
+				probe = signature;
+				for (int b=0; b<edges.size(); b++)
+					if ((mask & (1 << b)) != 0)
+						probe += shift[b];
+				ArrayList<Integer> bucket = buckets.get(probe);
+				if (bucket != null)
+					candidates.addAll(bucket);
+			}
+		}
+
+		// Increase counter of every match, or add new centroids if none
+		boolean incremented = false;
+		for (int j:candidates)
+			incremented |= increment(j, cents);
+		if (!incremented)
+		{
+			buckets.computeIfAbsent(signature, s -> new ArrayList<>()).add(solutions.size());
+			solutions.add(cents);
+			counters.add(0);
+		}
+	}
+
+	/**
+	 * Increases counter of stored solution if it is within epsilon of centroids
+	 * @param index - integer index of stored solution
+	 * @param cents - Matrix of sorted centroids
+	 * @return boolean - true if counter increased
+	 */
+	private boolean increment(int index, Matrix cents)
+	{
+		if (cents.minus(solutions.get(index)).squareSum() < epsilon)
+		{
+			counters.set(index, counters.get(index) + 1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns which direction the neighboring cell is for a value close to an edge
+	 * @param cents - Matrix of sorted centroids
+	 * @param index - integer flattened index of value
+	 * @param cell - long cell of value
+	 * @return long - -1 for lower cell, 1 for upper cell
+	 */
+	private long neighborCell(Matrix cents, int index, long cell)
+	{
+		double value = cents.getValue(index / cents.numCols(), index % cents.numCols()) / cellWidth;
+		if (value - cell < 0.5)
+			return -1;
+		return 1;
+	}
+
+	/**
+	 * Hashes grid cells into a single signature
+	 * @param cells - long[] of grid cells
+	 * @return long
+	 */
+	private long signature(long[] cells)
+	{
+		long hash = 1125899906842597L;
+		for (long c:cells)
+			hash = signaturePrime * hash + c;
+		return hash;
+	}
+
+	/**
+	 * Returns how much the signature changes when one cell goes up by one, which is the multiplier raised to
+	 * the number of cells after it
+	 * @param index - integer flattened index of cell
+	 * @param length - integer number of cells
+	 * @return long
+	 */
+	private long weight(int index, int length)
+	{
+		long w = 1;
+		for (int p=index+1; p<length; p++)
+			w *= signaturePrime;
+		return w;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns solution that was seen most often, the first seen if there is a tie
+	 * @return Matrix - sorted centroids
+	 */
+	public Matrix getMostFrequent()
+	{
+		int maxIndex = 0;
+		for (int i=1; i<counters.size(); i++)
+			if (counters.get(i) > counters.get(maxIndex))
+				maxIndex = i;
+		return solutions.get(maxIndex);
+	}
+
+	/**
+	 * Returns number of distinct solutions stored
+	 * @return int
+	 */
+	public int size()
+	{
+		return solutions.size();
+	}
+}
@@ -0,0 +1,183 @@
+package KMeans;
+import java.util.Arrays;
+import java.util.Comparator;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * SpaceFillingCurve reorders data rows along a Hilbert curve so rows next to each other in memory are
+ * also close in space, and usually belong to the same centroid. Only the columns with the largest range are used
+ * so every curve index fits in a long. The permutation is kept so labels can be put back in original file order.
+ * @author Nick Farrenkopf
+ */
+public class SpaceFillingCurve {
+
+	// Reordered row i is original row permutation[i]
+	private int[] permutation;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Finds the Hilbert curve order of the data rows
+	 * @param data - Matrix of data
+	 */
+	public SpaceFillingCurve(Matrix data)
+	{
+		// Pick columns with largest range
+		int n = data.numRows();
+		int dims = Math.min(data.numCols(), maxCurveDimensions);
+		int bits = Math.min(maxCurveBits, 63 / Math.max(dims, 1));
+		double[] min = new double[data.numCols()];
+		double[] max = new double[data.numCols()];
+		Integer[] cols = new Integer[data.numCols()];
+		for (int j=0; j<data.numCols(); j++)
+		{
+			cols[j] = j;
+			min[j] = Double.MAX_VALUE;
+			max[j] = -Double.MAX_VALUE;
+			for (int i=0; i<n; i++)
+			{
+				min[j] = Math.min(min[j], data.getValue(i, j));
+				max[j] = Math.max(max[j], data.getValue(i, j));
+			}
+		}
+		Arrays.sort(cols, Comparator.comparingDouble(j -> min[j] - max[j]));
+
+		// Quantize chosen columns to grid, then find curve index of each row
+		long[] keys = new long[n];
+		int[] axes = new int[dims];
+		double scale;
+		for (int i=0; i<n; i++)
+		{
+			for (int a=0; a<dims; a++)
+			{
+				int j = cols[a];
+				scale = max[j] > min[j] ? ((1 << bits) - 1) / (max[j] - min[j]) : 0;
+				axes[a] = (int) ((data.getValue(i, j) - min[j]) * scale);
+			}
+			keys[i] = hilbertIndex(axes, bits);
+		}
+
+		// Sort rows by curve index
+		Integer[] order = new Integer[n];
+		for (int i=0; i<n; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+		permutation = new int[n];
+		for (int i=0; i<n; i++)
+			permutation[i] = order[i];
+	}
+
+	///// CURVE METHODS /////
+
+	/**
+	 * Returns Hilbert curve index of a grid point using Skilling's transform. Axes are turned into the
+	 * transposed Hilbert index in place, then bits are interleaved into a single long.
+	 * @param axes - int[] grid coordinates, changed by this method
+	 * @param bits - integer number of bits per coordinate
+	 * @return long
+	 */
+	public static long hilbertIndex(int[] axes, int bits)
+	{
+		int dims = axes.length;
+		int m = 1 << (bits - 1);
+		int p, q, t;
+		if (dims == 0)
+			return 0;
+
+		// Inverse undo excess work
+		for (q=m; q>1; q>>=1)
+		{
+			p = q - 1;
+			for (int i=0; i<dims; i++)
+				if ((axes[i] & q) != 0)
+					axes[0] ^= p;
+				else {
+					t = (axes[0] ^ axes[i]) & p;
+					axes[0] ^= t;
+					axes[i] ^= t;
+				}
+		}
+
+		// Gray encode
+		for (int i=1; i<dims; i++)
+			axes[i] ^= axes[i - 1];
+		t = 0;
+		for (q=m; q>1; q>>=1)
+			if ((axes[dims - 1] & q) != 0)
+				t ^= q - 1;
+		for (int i=0; i<dims; i++)
+			axes[i] ^= t;
+
+		// Interleave bits, most significant first
+		long index = 0;
+		for (int b=bits-1; b>=0; b--)
+			for (int i=0; i<dims; i++)
+				index = (index << 1) | ((axes[i] >> b) & 1);
+		return index;
+	}
+
+	/**
+	 * Returns copy of data with rows in curve order
+	 * @param data - Matrix of data this curve was made from
+	 * @return Matrix
+	 */
+	public Matrix reorder(Matrix data)
+	{
+		Matrix m = new Matrix(data.numRows(), data.numCols());
+		for (int i=0; i<permutation.length; i++)
+			for (int j=0; j<data.numCols(); j++)
+				m.setValue(i, j, data.getValue(permutation[i], j));
+		return m;
+	}
+
+	/**
+	 * Returns labels of reordered rows in original row order
+	 * @param labels - int[] labels in curve order
+	 * @return int[] - labels in original order
+	 */
+	public int[] toOriginalOrder(int[] labels)
+	{
+		int[] original = new int[labels.length];
+		for (int i=0; i<permutation.length; i++)
+			original[permutation[i]] = labels[i];
+		return original;
+	}
+
+	/**
+	 * Returns copy of reordered data with rows back in original order
+	 * @param data - Matrix of data in curve order
+	 * @return Matrix
+	 */
+	public Matrix toOriginalOrder(Matrix data)
+	{
+		Matrix m = new Matrix(data.numRows(), data.numCols());
+		for (int i=0; i<permutation.length; i++)
+			for (int j=0; j<data.numCols(); j++)
+				m.setValue(permutation[i], j, data.getValue(i, j));
+		return m;
+	}
+
+	/**
+	 * Extends permutation for rows appended after reordering, which stay at the end in their given order
+	 * @param count - integer number of rows appended
+	 */
+	public void append(int count)
+	{
+		int n = permutation.length;
+		permutation = Arrays.copyOf(permutation, n + count);
+		for (int i=n; i<n+count; i++)
+			permutation[i] = i;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns permutation where reordered row i is original row permutation[i]
+	 * @return int[]
+	 */
+	public int[] getPermutation()
+	{
+		return permutation;
+	}
+}
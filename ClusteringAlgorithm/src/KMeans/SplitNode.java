@@ -0,0 +1,148 @@
+package KMeans;
+
+/**
+ * SplitNode is one cluster in the split tree of bisecting K Means. Leaves are the final clusters,
+ * and every other node was split into a left and right child.
+ * @author Nick Farrenkopf
+ */
+public class SplitNode {
+
+	// Tree variables, -1 if none
+	private int id;
+	private int parent;
+	private int left;
+	private int right;
+
+	// Cluster variables
+	private double[] centroid;
+	private int size;
+	private double sse;
+
+	// Centroid index of a leaf, -1 otherwise
+	private int label;
+
+	/**
+	 * Initializes node for a cluster
+	 * @param id - integer index of this node in tree
+	 * @param parent - integer index of parent node, -1 for root
+	 * @param centroid - double[] cluster centroid
+	 * @param size - integer number of points in cluster
+	 * @param sse - double sum of squared distances to centroid
+	 */
+	public SplitNode(int id, int parent, double[] centroid, int size, double sse)
+	{
+		this.id = id;
+		this.parent = parent;
+		this.centroid = centroid;
+		this.size = size;
+		this.sse = sse;
+		left = -1;
+		right = -1;
+		label = -1;
+	}
+
+	///// SETTERS /////
+
+	/**
+	 * Sets children of node after it is split
+	 * @param left - integer index of left child
+	 * @param right - integer index of right child
+	 */
+	public void setChildren(int left, int right)
+	{
+		this.left = left;
+		this.right = right;
+	}
+
+	/**
+	 * Sets centroid index of a leaf
+	 * @param label - integer centroid index
+	 */
+	public void setLabel(int label)
+	{
+		this.label = label;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns index of this node in tree
+	 * @return int
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns index of parent node, -1 for root
+	 * @return int
+	 */
+	public int getParent()
+	{
+		return parent;
+	}
+
+	/**
+	 * Returns index of left child, -1 for leaf
+	 * @return int
+	 */
+	public int getLeft()
+	{
+		return left;
+	}
+
+	/**
+	 * Returns index of right child, -1 for leaf
+	 * @return int
+	 */
+	public int getRight()
+	{
+		return right;
+	}
+
+	/**
+	 * Returns whether node is a final cluster
+	 * @return boolean
+	 */
+	public boolean isLeaf()
+	{
+		return left < 0;
+	}
+
+	/**
+	 * Returns cluster centroid
+	 * @return double[]
+	 */
+	public double[] getCentroid()
+	{
+		return centroid;
+	}
+
+	/**
+	 * Returns number of points in cluster
+	 * @return int
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns sum of squared distances from cluster points to centroid
+	 * @return double
+	 */
+	public double getSSE()
+	{
+		return sse;
+	}
+
+	/**
+	 * Returns centroid index of a leaf, -1 otherwise
+	 * @return int
+	 */
+	public int getLabel()
+	{
+		return label;
+	}
+}
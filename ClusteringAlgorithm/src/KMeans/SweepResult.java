@@ -0,0 +1,90 @@
+package KMeans;
+
+/**
+ * SweepResult holds the outcome of one number of centroids in a K sweep, for elbow analysis.
+ * @author Nick Farrenkopf
+ */
+public class SweepResult {
+
+	// Run variables
+	private int numberCentroids;
+	private double[][] centroids;
+	private double inertia;
+	private int numberIterations;
+	private long time;
+
+	/**
+	 * Initializes result of a single run
+	 * @param numCentroids - integer number of centroids
+	 * @param centroids - double[][] converged centroids
+	 * @param inertia - double sum of squared distances to closest centroid
+	 * @param numIterations - integer number of iterations to converge
+	 * @param time - long nanoseconds taken
+	 */
+	public SweepResult(int numCentroids, double[][] centroids, double inertia, int numIterations, long time)
+	{
+		this.numberCentroids = numCentroids;
+		this.centroids = centroids;
+		this.inertia = inertia;
+		this.numberIterations = numIterations;
+		this.time = time;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns number of centroids
+	 * @return int
+	 */
+	public int getNumberCentroids()
+	{
+		return numberCentroids;
+	}
+
+	/**
+	 * Returns converged centroids
+	 * @return double[][]
+	 */
+	public double[][] getCentroids()
+	{
+		return centroids;
+	}
+
+	/**
+	 * Returns sum of squared distances from each point to its closest centroid
+	 * @return double
+	 */
+	public double getInertia()
+	{
+		return inertia;
+	}
+
+	/**
+	 * Returns number of iterations taken to converge
+	 * @return int
+	 */
+	public int getNumberIterations()
+	{
+		return numberIterations;
+	}
+
+	/**
+	 * Returns time taken in nanoseconds
+	 * @return long
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns result as a single line for printing
+	 * @return String
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("k=%d inertia=%.4f iterations=%d time=%.3fms", numberCentroids, inertia,
+				numberIterations, time / 1e6);
+	}
+}
@@ -0,0 +1,109 @@
+package KMeans;
+import Math.Matrix;
+
+/**
+ * Vectors holds static helpers for the array based K Means engines. Matrix row vectors are copied
+ * every time they are grabbed, so engines that loop over the data many times copy it to arrays once.
+ * @author Nick Farrenkopf
+ */
+public class Vectors {
+
+	/**
+	 * Copies a Matrix into an array of rows
+	 * @param m - Matrix to copy
+	 * @return double[][] - array of rows
+	 */
+	public static double[][] toArray(Matrix m)
+	{
+		double[][] a = new double[m.numRows()][m.numCols()];
+		for (int i=0; i<m.numRows(); i++)
+			for (int j=0; j<m.numCols(); j++)
+				a[i][j] = m.getValue(i, j);
+		return a;
+	}
+
+	/**
+	 * Copies an array of rows into a Matrix
+	 * @param a - double[][] array of rows
+	 * @return Matrix
+	 */
+	public static Matrix toMatrix(double[][] a)
+	{
+		Matrix m = new Matrix(a.length, a.length == 0 ? 0 : a[0].length);
+		for (int i=0; i<a.length; i++)
+			for (int j=0; j<a[i].length; j++)
+				m.setValue(i, j, a[i][j]);
+		return m;
+	}
+
+	/**
+	 * Returns squared distance between two vectors
+	 * @param a - double[] first vector
+	 * @param b - double[] second vector
+	 * @return double
+	 */
+	public static double squaredDistance(double[] a, double[] b)
+	{
+		double sum = 0, diff;
+		for (int j=0; j<a.length; j++)
+		{
+			diff = a[j] - b[j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns index of closest centroid to a vector
+	 * @param point - double[] vector
+	 * @param centroids - double[][] array of centroids
+	 * @return int
+	 */
+	public static int closest(double[] point, double[][] centroids)
+	{
+		int minIndex = 0;
+		double minDist = squaredDistance(point, centroids[0]);
+		double newDist;
+		for (int c=1; c<centroids.length; c++)
+		{
+			newDist = squaredDistance(point, centroids[c]);
+			if (newDist < minDist)
+			{
+				minIndex = c;
+				minDist = newDist;
+			}
+		}
+		return minIndex;
+	}
+
+	/**
+	 * Returns a Matrix with rows of second Matrix below rows of first
+	 * @param top - Matrix of first rows
+	 * @param bottom - Matrix of rows to add
+	 * @return Matrix
+	 */
+	public static Matrix concatenate(Matrix top, Matrix bottom)
+	{
+		int cols = top.numRows() == 0 ? bottom.numCols() : top.numCols();
+		Matrix m = new Matrix(top.numRows() + bottom.numRows(), cols);
+		for (int i=0; i<top.numRows(); i++)
+			for (int j=0; j<cols; j++)
+				m.setValue(i, j, top.getValue(i, j));
+		for (int i=0; i<bottom.numRows(); i++)
+			for (int j=0; j<cols; j++)
+				m.setValue(top.numRows() + i, j, bottom.getValue(i, j));
+		return m;
+	}
+
+	/**
+	 * Returns a hash with one more value mixed in, so folding values in order hashes all of them.
+	 * Zero and negative zero hash the same, as they are equal values.
+	 * @param hash - long hash of values so far
+	 * @param value - double value to mix in
+	 * @return long
+	 */
+	public static long hash(long hash, double value)
+	{
+		return Long.rotateLeft((hash ^ Double.doubleToLongBits(value + 0.0)) * 0x9E3779B97F4A7C15L, 31);
+	}
+}
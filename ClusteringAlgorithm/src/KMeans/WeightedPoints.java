@@ -0,0 +1,85 @@
+package KMeans;
+import Math.Matrix;
+
+/**
+ * WeightedPoints is a set of data points where each point stands in for a weight's worth of original points,
+ * such as a coreset summary of a large data set.
+ * @author Nick Farrenkopf
+ */
+public class WeightedPoints {
+
+	// Points and weight of each
+	private double[][] points;
+	private double[] weights;
+
+	/**
+	 * Initializes weighted points
+	 * @param points - double[][] point rows
+	 * @param weights - double[] weight of each point
+	 */
+	public WeightedPoints(double[][] points, double[] weights)
+	{
+		this.points = points;
+		this.weights = weights;
+	}
+
+	/**
+	 * Returns K Means on these points, each point counting as its weight
+	 * @param numCentroids - integer number of centroids
+	 * @return KMeans
+	 */
+	public KMeans toKMeans(int numCentroids)
+	{
+		return new KMeans(Vectors.toMatrix(points), weights, numCentroids);
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns point rows
+	 * @return double[][]
+	 */
+	public double[][] getPoints()
+	{
+		return points;
+	}
+
+	/**
+	 * Returns weight of each point
+	 * @return double[]
+	 */
+	public double[] getWeights()
+	{
+		return weights;
+	}
+
+	/**
+	 * Returns points as a Matrix
+	 * @return Matrix
+	 */
+	public Matrix toMatrix()
+	{
+		return Vectors.toMatrix(points);
+	}
+
+	/**
+	 * Returns number of points
+	 * @return int
+	 */
+	public int size()
+	{
+		return points.length;
+	}
+
+	/**
+	 * Returns sum of weights, about the number of original points
+	 * @return double
+	 */
+	public double totalWeight()
+	{
+		double sum = 0;
+		for (double w:weights)
+			sum += w;
+		return sum;
+	}
+}
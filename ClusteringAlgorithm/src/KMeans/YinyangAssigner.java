@@ -0,0 +1,283 @@
+package KMeans;
+import java.util.Arrays;
+import static KMeans.Constants.*;
+
+/**
+ * YinyangAssigner finds closest centroids for many centroids by filtering at three levels.
+ * Centroids are grouped once by clustering the first centroids. Each point keeps an upper bound on the distance
+ * to its centroid and one lower bound per group on the distance to any other centroid in that group.
+ * When centroids move, bounds are loosened by how far they moved. A point is skipped if its upper bound is below
+ * every group bound (global), a group is skipped if its bound is above the upper bound (group), and a centroid
+ * is skipped if the group bound before moving, minus how far it moved, is above the best distance (local).
+ * Ties go to the current centroid, then the smaller index, so labels match checking every centroid.
+ * @author Nick Farrenkopf
+ */
+public class YinyangAssigner {
+
+	// Data vectors
+	private double[][] data;
+
+	// Centroid groups
+	private int numberGroups;
+	private int[] groupOf;
+	private int[][] groups;
+
+	// Bounds, group bounds flattened by point
+	private double[] upper;
+	private double[] lower;
+	private double[][] lastCentroids;
+
+	// Pruning statistics of last pass
+	private long distanceCount;
+	private long possibleCount;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes assigner over data, grouping centroids later on first assignment
+	 * @param data - double[][] data rows
+	 */
+	public YinyangAssigner(double[][] data)
+	{
+		this.data = data;
+	}
+
+	///// ASSIGNMENT METHODS /////
+
+	/**
+	 * Updates labels to closest centroid. First call checks every centroid to set bounds.
+	 * @param centroids - double[][] current centroids
+	 * @param labels - int[] labels to update, current labels on input
+	 * @return int - number of labels changed
+	 */
+	public int assign(double[][] centroids, int[] labels)
+	{
+		distanceCount = 0;
+		possibleCount = (long) data.length * centroids.length;
+		if (lastCentroids == null)
+			return initialize(centroids, labels);
+
+		// How far each centroid and group moved
+		double[] drift = new double[centroids.length];
+		double[] groupDrift = new double[numberGroups];
+		for (int c=0; c<centroids.length; c++)
+		{
+			drift[c] = Math.sqrt(Vectors.squaredDistance(centroids[c], lastCentroids[c]));
+			groupDrift[groupOf[c]] = Math.max(groupDrift[groupOf[c]], drift[c]);
+		}
+
+		int changed = 0;
+		double[] oldLower = new double[numberGroups];
+		for (int i=0; i<data.length; i++)
+		{
+			// Loosen bounds
+			int base = i * numberGroups;
+			double globalLower = Double.MAX_VALUE;
+			upper[i] += drift[labels[i]];
+			for (int g=0; g<numberGroups; g++)
+			{
+				oldLower[g] = lower[base + g];
+				lower[base + g] -= groupDrift[g];
+				globalLower = Math.min(globalLower, lower[base + g]);
+			}
+
+			// Global filter, then again with tight upper bound
+			if (upper[i] <= globalLower)
+				continue;
+			int old = labels[i];
+			double oldDist = distance(i, centroids[old]);
+			upper[i] = Math.sqrt(oldDist);
+			if (upper[i] <= globalLower)
+				continue;
+
+			// Group and local filters
+			int best = old;
+			double bestDist = upper[i];
+			for (int g=0; g<numberGroups; g++)
+			{
+				if (lower[base + g] > bestDist)
+					continue;
+				double groupLower = Double.MAX_VALUE, bound, dist;
+				for (int c:groups[g])
+				{
+					if (c == best)
+						continue;
+					bound = oldLower[g] - drift[c];
+					if (c != old && bound > bestDist)
+					{
+						groupLower = Math.min(groupLower, bound);
+						continue;
+					}
+					dist = c == old ? upper[i] : Math.sqrt(distance(i, centroids[c]));
+					if (dist < bestDist || (dist == bestDist && best != old && c < best))
+					{
+						// Old best becomes a bound for its own group
+						if (groupOf[best] == g)
+							groupLower = Math.min(groupLower, bestDist);
+						else
+							lower[base + groupOf[best]] = Math.min(lower[base + groupOf[best]], bestDist);
+						best = c;
+						bestDist = dist;
+					} else
+						groupLower = Math.min(groupLower, dist);
+				}
+				lower[base + g] = groupLower;
+			}
+
+			// Update label
+			if (best != old)
+			{
+				labels[i] = best;
+				changed++;
+			}
+			upper[i] = bestDist;
+		}
+
+		lastCentroids = copy(centroids);
+		return changed;
+	}
+
+	/**
+	 * Groups centroids, then checks every centroid for every point to set labels and bounds
+	 * @param centroids - double[][] current centroids
+	 * @param labels - int[] labels to update
+	 * @return int - number of labels changed
+	 */
+	private int initialize(double[][] centroids, int[] labels)
+	{
+		groupCentroids(centroids);
+		upper = new double[data.length];
+		lower = new double[data.length * numberGroups];
+		Arrays.fill(lower, Double.MAX_VALUE);
+
+		int changed = 0;
+		double[] dists = new double[centroids.length];
+		for (int i=0; i<data.length; i++)
+		{
+			// Closest centroid, keeping current centroid on ties
+			for (int c=0; c<centroids.length; c++)
+				dists[c] = distance(i, centroids[c]);
+			int best = labels[i];
+			for (int c=0; c<centroids.length; c++)
+				if (dists[c] < dists[best])
+					best = c;
+			if (best != labels[i])
+			{
+				labels[i] = best;
+				changed++;
+			}
+
+			// Bounds
+			upper[i] = Math.sqrt(dists[best]);
+			for (int c=0; c<centroids.length; c++)
+				if (c != best)
+					lower[i * numberGroups + groupOf[c]] = Math.min(lower[i * numberGroups + groupOf[c]], Math.sqrt(dists[c]));
+		}
+		lastCentroids = copy(centroids);
+		return changed;
+	}
+
+	/**
+	 * Groups centroids with a few K Means iterations over the centroids themselves
+	 * @param centroids - double[][] centroids to group
+	 */
+	private void groupCentroids(double[][] centroids)
+	{
+		int k = centroids.length;
+		numberGroups = Math.max(1, Math.min(k, k / yinyangGroupSize));
+		groupOf = new int[k];
+
+		// Group centers start at evenly spaced centroids
+		double[][] centers = new double[numberGroups][];
+		for (int g=0; g<numberGroups; g++)
+			centers[g] = centroids[g * k / numberGroups].clone();
+		for (int it=0; it<yinyangGroupIterations; it++)
+		{
+			for (int c=0; c<k; c++)
+				groupOf[c] = Vectors.closest(centroids[c], centers);
+			double[][] sums = new double[numberGroups][centroids[0].length];
+			int[] counts = new int[numberGroups];
+			for (int c=0; c<k; c++)
+			{
+				for (int j=0; j<centroids[c].length; j++)
+					sums[groupOf[c]][j] += centroids[c][j];
+				counts[groupOf[c]]++;
+			}
+			for (int g=0; g<numberGroups; g++)
+				if (counts[g] > 0)
+					for (int j=0; j<sums[g].length; j++)
+						centers[g][j] = sums[g][j] / counts[g];
+		}
+
+		// Member lists, centroids in increasing order
+		int[] counts = new int[numberGroups];
+		for (int c=0; c<k; c++)
+			counts[groupOf[c]]++;
+		groups = new int[numberGroups][];
+		for (int g=0; g<numberGroups; g++)
+			groups[g] = new int[counts[g]];
+		Arrays.fill(counts, 0);
+		for (int c=0; c<k; c++)
+			groups[groupOf[c]][counts[groupOf[c]]++] = c;
+	}
+
+	/**
+	 * Returns squared distance from a data point to a centroid, counting it
+	 * @param i - integer index of data point
+	 * @param centroid - double[] centroid
+	 * @return double
+	 */
+	private double distance(int i, double[] centroid)
+	{
+		distanceCount++;
+		return Vectors.squaredDistance(data[i], centroid);
+	}
+
+	/**
+	 * Returns deep copy of centroids
+	 * @param centroids - double[][] centroids
+	 * @return double[][]
+	 */
+	private static double[][] copy(double[][] centroids)
+	{
+		double[][] c = new double[centroids.length][];
+		for (int i=0; i<centroids.length; i++)
+			c[i] = centroids[i].clone();
+		return c;
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns fraction of point to centroid distances skipped in last pass
+	 * @return double
+	 */
+	public double getPruningRate()
+	{
+		if (possibleCount == 0)
+			return 0;
+		return 1 - (double) distanceCount / possibleCount;
+	}
+
+	/**
+	 * Returns lower bound from last pass on the distance from a data point to any centroid but its own
+	 * @param i - integer index of data point
+	 * @return double
+	 */
+	public double getLowerBound(int i)
+	{
+		double bound = Double.MAX_VALUE;
+		for (int g=0; g<numberGroups; g++)
+			bound = Math.min(bound, lower[i * numberGroups + g]);
+		return bound;
+	}
+
+	/**
+	 * Returns number of groups centroids were split into
+	 * @return int
+	 */
+	public int getNumberGroups()
+	{
+		return numberGroups;
+	}
+}
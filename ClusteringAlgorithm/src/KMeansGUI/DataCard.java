@@ -9,11 +9,13 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
-import FileThings.TextFile;
+import javax.swing.SwingUtilities;
 import KMeans.Controller;
+import KMeans.DatasetCache;
 import Math.Matrix;
 import static KMeans.Constants.*;
 
@@ -39,8 +41,12 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 	private JComboBox<Integer> plotIndex1;
 	private JComboBox<Integer> plotIndex2;
 	
-	// Array list to hold manual point data
+	// Check box so user can have K Means run on rows reordered along a curve
+	private JCheckBox reorderBox;
+	
+	// Array list to hold manual point data, and how many have been saved
 	private ArrayList<Point2D.Double> manualPoints;
+	private int savedPoints;
 
 	/**
 	 * Initializes DataCard with controller. Initializes all comonents and adds to panel.
@@ -68,11 +74,15 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 		plotIndex1 = new JComboBox<>(indexes);
 		plotIndex2 = new JComboBox<>(indexes);
 		
+		// Reorder check box, starting as controller has it
+		reorderBox = new JCheckBox("Reorder rows", controller.isReorderData());
+		
 		// Add action listeners
 		fileSelectionBox.addActionListener(this);
 		saveButton.addActionListener(this);
 		plotIndex1.addActionListener(this);
 		plotIndex2.addActionListener(this);
+		reorderBox.addActionListener(this);
 
 		// Initializes data
 		manualPoints = new ArrayList<>();
@@ -85,17 +95,39 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 		add(indexLabel);
 		add(plotIndex1);
 		add(plotIndex2);
+		add(reorderBox);
 	}
 
 	/**
-	 * Loads new data from combo box, setting data to controller.
-	 * Changing the combo boxes is tedious, so there is a bit of code here.
+	 * Loads new data from combo box in the background, setting data to controller once read.
+	 * Data files next to the selection are prefetched so switching to them is instant.
 	 */
 	public void loadData()
 	{
-		// Load file data
-		Matrix data = TextFile.readFileToMatrix((String) fileSelectionBox.getSelectedItem(), 0, Integer.MAX_VALUE);
+		// Load file data, ignoring it if user picked another file meanwhile
+		String name = (String) fileSelectionBox.getSelectedItem();
+		DatasetCache cache = controller.getDatasetCache();
+		cache.load(name).whenComplete((data, error) -> SwingUtilities.invokeLater(() -> {
+			if (error != null)
+				controller.setMessage("Could not load " + name + ".");
+			else if (name.equals(fileSelectionBox.getSelectedItem()))
+				showData(data);
+		}));
 		
+		// Prefetch neighbors, skipping manual entry
+		int selected = fileSelectionBox.getSelectedIndex();
+		for (int i=selected-prefetchNeighbors; i<=selected+prefetchNeighbors; i++)
+			if (i >= 0 && i < exampleData.length && i != selected && !exampleData[i].equals("Manual"))
+				cache.prefetch(exampleData[i]);
+	}
+	
+	/**
+	 * Sets loaded data to controller and resets plot index boxes to its columns.
+	 * Changing the combo boxes is tedious, so there is a bit of code here.
+	 * @param data - Matrix of loaded data
+	 */
+	private void showData(Matrix data)
+	{
 		// Remove unwanted data and add wanted data
 		plotIndex1.setSelectedIndex(0);
 		plotIndex2.setSelectedIndex(0);
@@ -128,8 +160,10 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 		// If user wants to save manual data
 		if (e.getSource() == saveButton)
 		{
-			// Sets data
-			controller.setData(new Matrix(manualPoints));
+			// Adds points clicked since last save, so K Means can keep its centroids
+			if (savedPoints < manualPoints.size())
+				controller.appendData(new Matrix(new ArrayList<>(manualPoints.subList(savedPoints, manualPoints.size()))));
+			savedPoints = manualPoints.size();
 			controller.setMessage("Data saved in program.");
 		}
 		
@@ -161,6 +195,7 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 				// Reset data lists
 				controller.clearData();
 				manualPoints.clear();
+				savedPoints = 0;
 			}
 		
 		// If plot index box changed
@@ -170,6 +205,10 @@ public class DataCard extends JPanel implements ActionListener, MouseListener {
 			controller.setPlotIndexes(indexes);
 		}
 		
+		// If reorder box changed
+		if (e.getSource() == reorderBox)
+			controller.setReorderData(reorderBox.isSelected());
+		
 		// Refresh screen
 		repaint();
 	}
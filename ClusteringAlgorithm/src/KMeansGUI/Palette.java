@@ -0,0 +1,24 @@
+package KMeansGUI;
+import java.awt.Color;
+import static KMeans.Constants.*;
+
+/**
+ * Palette gives a display color for any centroid index. The first few come from the color scheme,
+ * and the rest are generated by stepping hue by the golden ratio so neighboring indexes look different.
+ */
+public class Palette {
+
+	/**
+	 * Returns color of a centroid
+	 * @param i - integer centroid index
+	 * @return Color
+	 */
+	public static Color getColor(int i)
+	{
+		if (i < colorScheme.length)
+			return colorScheme[i];
+		float hue = (float) ((i - colorScheme.length) * 0.618033988749895 % 1);
+		float brightness = (i / colorScheme.length) % 2 == 0 ? 0.85f : 0.6f;
+		return Color.getHSBColor(hue, 0.8f, brightness);
+	}
+}
@@ -161,13 +161,13 @@ public class ScreenCard extends JPanel implements ActionListener{
 			// Grab k means variables
 			ArrayList<Matrix> allCentroids = controller.getKM().getAllCentroids();
 			Matrix c1, c2;
-			int[] dataIndexes = controller.getKM().getDataCentroidIndex();
+			int[] dataIndexes = controller.getDataCentroidIndex();
 			
 			// Draw all data points
 			for (int i=0; i<controller.getKM().getCentroids().numRows(); i++)
 			{
 				// If point has specified centroid, draw circle
-				g2.setColor(colorScheme[i]);
+				g2.setColor(Palette.getColor(i));
 				for (int j=0; j<data.numRows(); j++)
 					if (dataIndexes[j] == i)
 						g2.fill(new Ellipse2D.Double(data.getValue(j, ind[0]), data.getValue(j, ind[1]), size, size));
@@ -180,7 +180,7 @@ public class ScreenCard extends JPanel implements ActionListener{
 				c1 = controller.transformData(allCentroids.get(i));
 				for (int j=0; j<c1.numRows(); j++)
 				{
-					g2.setColor(colorScheme[j]);
+					g2.setColor(Palette.getColor(j));
 					g2.draw(new Ellipse2D.Double(c1.getValue(j, ind[0]), c1.getValue(j, ind[1]), 2 * size, 2 * size));
 				}
 			}
@@ -193,7 +193,7 @@ public class ScreenCard extends JPanel implements ActionListener{
 				c2 = controller.transformData(allCentroids.get(i - 1));
 				for (int j=0; j<c1.numRows(); j++)
 				{
-					g2.setColor(colorScheme[j]);
+					g2.setColor(Palette.getColor(j));
 					x1 = c1.getValue(j, ind[0]) + size;
 					y1 = c1.getValue(j, ind[1]) + size;
 					x2 = c2.getValue(j, ind[0]) + size;
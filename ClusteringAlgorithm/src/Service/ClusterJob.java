@@ -0,0 +1,400 @@
+package Service;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import FileThings.TextFile;
+import KMeans.Assignment;
+import KMeans.DataFile;
+import KMeans.DuplicateCollapser;
+import KMeans.EngineSelector;
+import KMeans.KMeans;
+import KMeans.OffHeapData;
+import KMeans.OffHeapKMeans;
+import KMeans.Vectors;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * ClusterJob is one clustering request: where its data comes from, how to cluster it, and what happened so far.
+ * Progress is kept as a list of event lines that any number of readers can follow while the job runs.
+ * Readers wait on a lock condition rather than a monitor, so a virtual thread waiting for events does not
+ * hold its carrier thread.
+ * @author Nick Farrenkopf
+ */
+public class ClusterJob implements Runnable {
+
+	/**
+	 * State is where a job is in its life
+	 */
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+		/**
+		 * Returns whether job will not change again
+		 * @return boolean
+		 */
+		public boolean isFinished()
+		{
+			return this == DONE || this == FAILED || this == CANCELLED;
+		}
+	}
+
+	// Request
+	private String id;
+	private Path path;
+	private double[][] uploaded;
+	private int numberCentroids;
+	private boolean runAll;
+	private Assignment assignment;
+	private long reservedBytes;
+
+	// Progress events and state, guarded by lock
+	private ReentrantLock lock;
+	private Condition changed;
+	private ArrayList<String> events;
+	private volatile State state;
+	private volatile boolean cancelled;
+
+	// Results once done
+	private Matrix centroids;
+	private int[] labels;
+	private double inertia;
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes a queued job. Exactly one of path and uploaded is given.
+	 * @param id - String job id
+	 * @param path - Path of data file, binary if it ends in .bin, null if uploaded
+	 * @param uploaded - double[][] uploaded data rows, null if from file
+	 * @param numCentroids - integer number of centroids
+	 * @param runAll - boolean run all restarts instead of converging once
+	 * @param assignment - Assignment mode
+	 * @param reservedBytes - long memory reserved for job
+	 */
+	public ClusterJob(String id, Path path, double[][] uploaded, int numCentroids, boolean runAll,
+			Assignment assignment, long reservedBytes)
+	{
+		this.id = id;
+		this.path = path;
+		this.uploaded = uploaded;
+		this.numberCentroids = numCentroids;
+		this.runAll = runAll;
+		this.assignment = assignment;
+		this.reservedBytes = reservedBytes;
+		lock = new ReentrantLock();
+		changed = lock.newCondition();
+		events = new ArrayList<>();
+		state = State.QUEUED;
+		publish("{\"state\":\"QUEUED\"}");
+	}
+
+	///// RUN METHODS /////
+
+	/**
+	 * Loads data and clusters it, publishing an event per iteration or restart
+	 */
+	@Override
+	public void run()
+	{
+		// Start unless cancelled while queued, under lock so cancel sees one or the other
+		lock.lock();
+		try
+		{
+			if (cancelled)
+				return;
+			state = State.RUNNING;
+		} finally {
+			lock.unlock();
+		}
+		publish("{\"state\":\"RUNNING\"}");
+		try
+		{
+			// Auto mode keeps a binary file off heap if the heap cannot hold the copies K Means makes
+			if (uploaded == null && path.toString().endsWith(".bin") && assignment == Assignment.AUTO)
+			{
+				int[] shape = DataFile.readShape(path);
+				EngineSelector selector = new EngineSelector();
+				if (selector.chooseOffHeap(shape[0], shape[1]))
+				{
+					runOffHeap(selector, shape[0]);
+					return;
+				}
+				publishLog(selector.getLog());
+			}
+			
+			// Load data
+			Matrix data;
+			if (uploaded != null)
+				data = Vectors.toMatrix(uploaded);
+			else if (path.toString().endsWith(".bin"))
+				data = DataFile.readBinary(path);
+			else
+				data = TextFile.readFileToMatrix(path.toString(), 0, Integer.MAX_VALUE);
+			uploaded = null;
+			
+			// Duplicate rows collapse into weighted unique points, which are clustered instead if fewer. Hashing rows
+			// first rules out exact duplicates without building the collapser, which is dropped if nothing collapsed
+			DuplicateCollapser collapser = null;
+			int distinct = data.numRows();
+			if (duplicateGrid > 0 || DuplicateCollapser.mayRepeat(data))
+			{
+				collapser = new DuplicateCollapser(data);
+				distinct = collapser.getUnique().size();
+				if (distinct == data.numRows())
+					collapser = null;
+			}
+			publish("{\"loaded\":" + data.numRows() + ",\"dimensions\":" + data.numCols()
+					+ ",\"distinct\":" + distinct + "}");
+			KMeans km = collapser != null ? collapser.toKMeans(numberCentroids) : new KMeans(data, numberCentroids);
+			
+			// Cluster, checking for cancel between steps
+			km.setAssignment(assignment);
+			if (runAll)
+			{
+				km.setRestartListener(r -> {
+					if (cancelled)
+						throw new CancellationException();
+					publish("{\"restart\":" + r + "}");
+				});
+				km.runAll();
+			} else {
+				for (int i=0; i<maxNumberIterations && !km.isConverged(); i++)
+				{
+					if (cancelled)
+						throw new CancellationException();
+					km.Iterate();
+					publish("{\"iteration\":" + (i + 1) + ",\"inertia\":" + km.getInertia() + "}");
+				}
+			}
+
+			// Keep results and engine decisions
+			publishLog(km.getEngineLog());
+			centroids = km.getCentroids();
+			labels = collapser != null ? collapser.expandLabels(km.getDataCentroidIndex()) : km.getDataCentroidIndex();
+			inertia = km.getInertia();
+			finish(State.DONE, "{\"state\":\"DONE\",\"inertia\":" + inertia + "}");
+		} catch (CancellationException e) {
+			finish(State.CANCELLED, "{\"state\":\"CANCELLED\"}");
+		} catch (Exception | OutOfMemoryError e) {
+			finish(State.FAILED, "{\"state\":\"FAILED\",\"error\":" + JobService.quote(String.valueOf(e)) + "}");
+		}
+	}
+
+	/**
+	 * Clusters a binary data file kept off heap, on a pool of the number of threads the selector chose
+	 * @param selector - EngineSelector that chose off heap
+	 * @param n - integer number of data points
+	 * @throws Exception if data cannot be read or clustering fails
+	 */
+	private void runOffHeap(EngineSelector selector, int n) throws Exception
+	{
+		ForkJoinPool pool = new ForkJoinPool(selector.chooseThreads(n));
+		try (OffHeapData data = OffHeapData.readBinary(path); OffHeapKMeans km = new OffHeapKMeans(data, numberCentroids))
+		{
+			publish("{\"loaded\":" + data.numRows() + ",\"dimensions\":" + data.numCols() + ",\"offHeap\":true}");
+			publishLog(selector.getLog());
+			
+			// Cluster on pool so parallel passes use its threads, checking for cancel between steps
+			pool.submit(() -> {
+				if (runAll)
+				{
+					km.setRestartListener(r -> {
+						if (cancelled)
+							throw new CancellationException();
+						publish("{\"restart\":" + r + "}");
+					});
+					km.runAll();
+				} else {
+					for (int i=0; i<maxNumberIterations && !km.isConverged(); i++)
+					{
+						if (cancelled)
+							throw new CancellationException();
+						km.Iterate();
+						publish("{\"iteration\":" + (i + 1) + ",\"inertia\":" + km.getInertia() + "}");
+					}
+				}
+			}).get();
+			
+			// Keep results
+			centroids = km.getCentroids();
+			labels = new int[n];
+			for (int i=0; i<n; i++)
+				labels[i] = km.getLabel(i);
+			inertia = km.getInertia();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+		finish(State.DONE, "{\"state\":\"DONE\",\"inertia\":" + inertia + "}");
+	}
+	
+	/**
+	 * Publishes engine decisions as events
+	 * @param log - ArrayList<String> decisions
+	 */
+	private void publishLog(ArrayList<String> log)
+	{
+		for (String line:log)
+			publish("{\"engine\":" + JobService.quote(line) + "}");
+	}
+
+	/**
+	 * Asks job to stop. A queued job is cancelled right away, a running job stops at its next step.
+	 * @return boolean - whether job was cancelled before it started, so will never run
+	 */
+	public boolean cancel()
+	{
+		lock.lock();
+		try
+		{
+			cancelled = true;
+			if (state != State.QUEUED)
+				return false;
+			finish(State.CANCELLED, "{\"state\":\"CANCELLED\"}");
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sets a final state and publishes its event
+	 * @param s - State final state
+	 * @param event - String event line
+	 */
+	void finish(State s, String event)
+	{
+		lock.lock();
+		try
+		{
+			if (state.isFinished())
+				return;
+			state = s;
+			events.add(event);
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	///// EVENT METHODS /////
+
+	/**
+	 * Adds an event line and wakes readers
+	 * @param event - String event line
+	 */
+	private void publish(String event)
+	{
+		lock.lock();
+		try
+		{
+			events.add(event);
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns events from an index on, waiting up to a timeout if there are none yet
+	 * @param from - integer index of first event wanted
+	 * @param timeoutMillis - long most milliseconds to wait
+	 * @return ArrayList<String> - new events, empty if none came in time
+	 * @throws InterruptedException if reader is interrupted
+	 */
+	public ArrayList<String> awaitEvents(int from, long timeoutMillis) throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while (events.size() <= from && !state.isFinished() && nanos > 0)
+				nanos = changed.awaitNanos(nanos);
+			return new ArrayList<>(events.subList(Math.min(from, events.size()), events.size()));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns job id
+	 * @return String
+	 */
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns current state
+	 * @return State
+	 */
+	public State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Returns latest event line
+	 * @return String
+	 */
+	public String getLatestEvent()
+	{
+		lock.lock();
+		try
+		{
+			return events.get(events.size() - 1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns memory reserved for job the first time, then zero, so it is given back exactly once
+	 * @return long
+	 */
+	public synchronized long takeReservedBytes()
+	{
+		long bytes = reservedBytes;
+		reservedBytes = 0;
+		return bytes;
+	}
+
+	/**
+	 * Returns centroids, null until done
+	 * @return Matrix
+	 */
+	public Matrix getCentroids()
+	{
+		return centroids;
+	}
+
+	/**
+	 * Returns label of each data point, null until done
+	 * @return int[]
+	 */
+	public int[] getLabels()
+	{
+		return labels;
+	}
+
+	/**
+	 * Returns inertia of result
+	 * @return double
+	 */
+	public double getInertia()
+	{
+		return inertia;
+	}
+}
@@ -0,0 +1,524 @@
+package Service;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import KMeans.Assignment;
+import Math.Matrix;
+import static KMeans.Constants.*;
+
+/**
+ * JobService is a local HTTP service that clusters data sets in a long running process.
+ * Requests are handled on virtual threads, so a client following a job's progress costs almost nothing while it
+ * waits. Clustering itself runs on a bounded pool of worker threads with a bounded queue.
+ * Before a job is queued, its memory is estimated from its input size. A job over the per job budget is refused,
+ * and a job that would push all reserved memory over the service budget is told to retry later, so tenants
+ * cannot run the heap out together. Uploads must give their length, and memory for parsing them is reserved
+ * from it before the body is read. The service only listens on the loopback address.
+ *
+ * POST /jobs?k=4[&path=file][&run=all][&mode=yinyang] starts a job on a data file in the data directory, or on
+ * data in the body in the example data layout if no path is given. GET /jobs/{id} gives the latest event,
+ * GET /jobs/{id}/events streams every event as one JSON line each until the job finishes, GET /jobs/{id}/result
+ * gives centroids and labels, and DELETE /jobs/{id} cancels. With mode=auto, engine decisions are events too, and a binary data file
+ * too big for the heap is clustered off heap.
+ * @author Nick Farrenkopf
+ */
+public class JobService {
+
+	// Server and pools
+	private HttpServer server;
+	private ExecutorService handlers;
+	private ThreadPoolExecutor workers;
+
+	// Jobs by id, oldest first for trimming
+	private ConcurrentHashMap<String, ClusterJob> jobs;
+	private ArrayList<String> order;
+	private AtomicLong nextId;
+
+	// Memory budget of all jobs and bytes reserved by running or queued jobs
+	private long budget;
+	private long reserved;
+
+	// Folder data file paths are read from, real path
+	private Path dataDirectory;
+
+	///// MAIN /////
+
+	/**
+	 * Starts service on a port and data directory, or the defaults if none are given
+	 * @param args - String[] optional port, then optional data directory
+	 * @throws IOException if port cannot be bound or data directory does not exist
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		JobService service = new JobService(args.length > 0 ? Integer.parseInt(args[0]) : servicePort,
+				Paths.get(args.length > 1 ? args[1] : serviceDataDirectory));
+		service.start();
+		System.out.println("Listening on http://localhost:" + service.getPort() + "/jobs");
+	}
+
+	///// CONSTRUCTOR /////
+
+	/**
+	 * Initializes service on the loopback address, reading data files from the default data directory
+	 * @param port - integer port, 0 for any free port
+	 * @throws IOException if port cannot be bound or data directory does not exist
+	 */
+	public JobService(int port) throws IOException
+	{
+		this(port, Paths.get(serviceDataDirectory));
+	}
+
+	/**
+	 * Initializes service on the loopback address
+	 * @param port - integer port, 0 for any free port
+	 * @param dataDirectory - Path of folder data file paths are read from
+	 * @throws IOException if port cannot be bound or data directory does not exist
+	 */
+	public JobService(int port, Path dataDirectory) throws IOException
+	{
+		this.dataDirectory = dataDirectory.toRealPath();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		handlers = Executors.newVirtualThreadPerTaskExecutor();
+		workers = new ThreadPoolExecutor(serviceWorkers, serviceWorkers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(serviceQueueSize));
+		jobs = new ConcurrentHashMap<>();
+		order = new ArrayList<>();
+		nextId = new AtomicLong();
+		budget = (long) (Runtime.getRuntime().maxMemory() * serviceHeapFraction);
+		server.setExecutor(handlers);
+		server.createContext("/jobs", this::handle);
+	}
+
+	/**
+	 * Starts answering requests
+	 */
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * Stops answering requests, cancels every job and stops the pools
+	 */
+	public void stop()
+	{
+		server.stop(0);
+		for (ClusterJob job:jobs.values())
+			job.cancel();
+		workers.shutdownNow();
+		handlers.shutdownNow();
+	}
+
+	///// REQUEST METHODS /////
+
+	/**
+	 * Routes a request by method and path
+	 * @param ex - HttpExchange of request
+	 * @throws IOException if response cannot be written
+	 */
+	private void handle(HttpExchange ex) throws IOException
+	{
+		try
+		{
+			String[] parts = ex.getRequestURI().getPath().split("/");
+			String method = ex.getRequestMethod();
+			ClusterJob job = parts.length > 2 ? jobs.get(parts[2]) : null;
+			if (parts.length == 2 && method.equals("POST"))
+				submit(ex);
+			else if (parts.length > 2 && job == null)
+				send(ex, 404, "{\"error\":\"No such job\"}");
+			else if (parts.length == 3 && method.equals("GET"))
+				send(ex, 200, status(job));
+			else if (parts.length == 3 && method.equals("DELETE"))
+			{
+				// Job that never started gives its memory back now rather than when a worker reaches it
+				if (job.cancel())
+					release(job.takeReservedBytes());
+				send(ex, 202, status(job));
+			} else if (parts.length == 4 && parts[3].equals("events") && method.equals("GET"))
+				streamEvents(ex, job);
+			else if (parts.length == 4 && parts[3].equals("result") && method.equals("GET"))
+				sendResult(ex, job);
+			else
+				send(ex, 404, "{\"error\":\"Unknown request\"}");
+		} catch (IllegalArgumentException e) {
+			send(ex, 400, "{\"error\":" + quote(e.getMessage()) + "}");
+		} finally {
+			ex.close();
+		}
+	}
+
+	/**
+	 * Admits a new job if its memory fits, then queues it on the workers
+	 * @param ex - HttpExchange of request
+	 * @throws IOException if body cannot be read or response cannot be written
+	 */
+	private void submit(HttpExchange ex) throws IOException
+	{
+		// Settings
+		HashMap<String, String> query = query(ex.getRequestURI().getRawQuery());
+		int k = Integer.parseInt(query.getOrDefault("k", String.valueOf(initialNumCentroids)));
+		boolean runAll = query.getOrDefault("run", "converge").equals("all");
+		Assignment mode = Assignment.valueOf(query.getOrDefault("mode", "standard").toUpperCase());
+
+		// Input size of a file in the data directory
+		Path path = null;
+		double[][] uploaded = null;
+		long inputBytes, parseBytes = 0;
+		if (query.containsKey("path"))
+		{
+			path = dataFile(query.get("path"));
+			inputBytes = Files.size(path);
+		} else {
+			// Upload length bounds what parsing it can hold, which is reserved before reading
+			String length = ex.getRequestHeaders().getFirst("Content-Length");
+			if (length == null)
+			{
+				send(ex, 411, "{\"error\":\"Upload needs Content-Length\"}");
+				return;
+			}
+			parseBytes = Math.min(Long.parseLong(length) * uploadParseFactor, jobMemoryBytes / (jobMemoryFactor + collapseMemoryFactor));
+			if (!reserve(parseBytes))
+			{
+				ex.getResponseHeaders().set("Retry-After", "5");
+				send(ex, 503, "{\"error\":\"Service memory budget full\"}");
+				return;
+			}
+
+			// Read at most what was reserved, which is swapped for the job's estimate below
+			try
+			{
+				uploaded = readRows(ex.getRequestBody(), parseBytes);
+			} catch (IOException | RuntimeException e) {
+				release(parseBytes);
+				throw e;
+			}
+			if (uploaded == null)
+			{
+				release(parseBytes);
+				send(ex, 413, "{\"error\":\"Upload over per job memory budget\"}");
+				return;
+			}
+			inputBytes = rowBytes(uploaded.length, uploaded.length == 0 ? 0 : uploaded[0].length);
+		}
+
+		// Admission control, uploaded rows staying reserved until the job's estimate replaces them. Estimate covers
+		// clustering and the unique points and row index kept when duplicate rows collapse
+		long estimate = inputBytes * (jobMemoryFactor + collapseMemoryFactor);
+		if (estimate > jobMemoryBytes)
+		{
+			release(parseBytes);
+			send(ex, 413, "{\"error\":\"Job over per job memory budget\"}");
+			return;
+		}
+		if (!exchange(parseBytes, estimate))
+		{
+			release(parseBytes);
+			ex.getResponseHeaders().set("Retry-After", "5");
+			send(ex, 503, "{\"error\":\"Service memory budget full\"}");
+			return;
+		}
+
+		// Queue, giving memory back when job ends however it ends
+		ClusterJob job = new ClusterJob(String.valueOf(nextId.incrementAndGet()), path, uploaded, k, runAll, mode, estimate);
+		try
+		{
+			workers.execute(() -> {
+				try
+				{
+					job.run();
+				} finally {
+					release(job.takeReservedBytes());
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(job.takeReservedBytes());
+			ex.getResponseHeaders().set("Retry-After", "5");
+			send(ex, 503, "{\"error\":\"Job queue full\"}");
+			return;
+		}
+		remember(job);
+		ex.getResponseHeaders().set("Location", "/jobs/" + job.getId());
+		send(ex, 202, "{\"id\":\"" + job.getId() + "\"}");
+	}
+
+	/**
+	 * Streams every event of a job as one line each, flushing as events come, until the job finishes
+	 * @param ex - HttpExchange of request
+	 * @param job - ClusterJob to follow
+	 * @throws IOException if response cannot be written
+	 */
+	private void streamEvents(HttpExchange ex, ClusterJob job) throws IOException
+	{
+		ex.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+		ex.sendResponseHeaders(200, 0);
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8)))
+		{
+			int next = 0;
+			while (true)
+			{
+				ArrayList<String> events = job.awaitEvents(next, serviceEventWait);
+				for (String e:events)
+					out.write(e + "\n");
+				out.flush();
+				next += events.size();
+				if (events.isEmpty() && job.getState().isFinished())
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sends centroids, labels and inertia of a finished job, written straight to the response
+	 * @param ex - HttpExchange of request
+	 * @param job - ClusterJob to send
+	 * @throws IOException if response cannot be written
+	 */
+	private void sendResult(HttpExchange ex, ClusterJob job) throws IOException
+	{
+		if (job.getState() != ClusterJob.State.DONE)
+		{
+			send(ex, 409, status(job));
+			return;
+		}
+		ex.getResponseHeaders().set("Content-Type", "application/json");
+		ex.sendResponseHeaders(200, 0);
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8)))
+		{
+			Matrix c = job.getCentroids();
+			out.write("{\"inertia\":" + job.getInertia() + ",\"centroids\":[");
+			for (int i=0; i<c.numRows(); i++)
+			{
+				out.write(i > 0 ? ",[" : "[");
+				for (int j=0; j<c.numCols(); j++)
+					out.write((j > 0 ? "," : "") + c.getValue(i, j));
+				out.write("]");
+			}
+			out.write("],\"labels\":[");
+			int[] labels = job.getLabels();
+			for (int i=0; i<labels.length; i++)
+				out.write((i > 0 ? "," : "") + labels[i]);
+			out.write("]}");
+		}
+	}
+
+	///// ADMISSION METHODS /////
+
+	/**
+	 * Reserves memory for a job if it fits in what is left of the service budget
+	 * @param bytes - long bytes wanted
+	 * @return boolean - whether memory was reserved
+	 */
+	private synchronized boolean reserve(long bytes)
+	{
+		if (reserved + bytes > budget)
+			return false;
+		reserved += bytes;
+		return true;
+	}
+
+	/**
+	 * Swaps memory already reserved for a different amount if that fits in the service budget
+	 * @param held - long bytes reserved now
+	 * @param bytes - long bytes wanted instead
+	 * @return boolean - whether memory was swapped, otherwise what is held stays reserved
+	 */
+	private synchronized boolean exchange(long held, long bytes)
+	{
+		if (reserved - held + bytes > budget)
+			return false;
+		reserved += bytes - held;
+		return true;
+	}
+
+	/**
+	 * Gives back memory of a job that ended
+	 * @param bytes - long bytes reserved
+	 */
+	private synchronized void release(long bytes)
+	{
+		reserved -= bytes;
+	}
+
+	/**
+	 * Keeps a job, dropping oldest finished jobs once too many are kept
+	 * @param job - ClusterJob to keep
+	 */
+	private synchronized void remember(ClusterJob job)
+	{
+		jobs.put(job.getId(), job);
+		order.add(job.getId());
+		for (int i=0; i<order.size() && order.size() > maxRetainedJobs; )
+			if (jobs.get(order.get(i)).getState().isFinished())
+				jobs.remove(order.remove(i));
+			else
+				i++;
+	}
+
+	///// HELPER METHODS /////
+
+	/**
+	 * Returns job id, state and latest event
+	 * @param job - ClusterJob
+	 * @return String
+	 */
+	private static String status(ClusterJob job)
+	{
+		return "{\"id\":\"" + job.getId() + "\",\"state\":\"" + job.getState() + "\",\"latest\":" + job.getLatestEvent() + "}";
+	}
+
+	/**
+	 * Sends a small JSON response
+	 * @param ex - HttpExchange of request
+	 * @param code - integer status code
+	 * @param body - String JSON body
+	 * @throws IOException if response cannot be written
+	 */
+	private static void send(HttpExchange ex, int code, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "application/json");
+		ex.sendResponseHeaders(code, bytes.length);
+		ex.getResponseBody().write(bytes);
+	}
+
+	/**
+	 * Returns real path of a data file inside the data directory
+	 * @param name - String path relative to the data directory
+	 * @return Path
+	 * @throws IllegalArgumentException if file cannot be read or is outside the data directory
+	 */
+	private Path dataFile(String name)
+	{
+		// Real path follows links, so neither .. nor a link leads out
+		Path real;
+		try
+		{
+			real = dataDirectory.resolve(name).toRealPath();
+		} catch (IOException | InvalidPathException e) {
+			throw new IllegalArgumentException("Cannot read " + name);
+		}
+		if (!real.startsWith(dataDirectory))
+			throw new IllegalArgumentException("Path must be inside the data directory: " + name);
+		if (!Files.isRegularFile(real) || !Files.isReadable(real))
+			throw new IllegalArgumentException("Cannot read " + name);
+		return real;
+	}
+
+	/**
+	 * Returns heap bytes of rows held as double arrays, counting each array's header
+	 * @param rows - long number of rows
+	 * @param cols - long number of values per row
+	 * @return long
+	 */
+	private static long rowBytes(long rows, long cols)
+	{
+		return rows * (arrayHeaderBytes + cols * Double.BYTES);
+	}
+
+	/**
+	 * Reads rows of whitespace separated values, giving up once the rows would hold more than a number of bytes
+	 * @param in - InputStream of body
+	 * @param maxBytes - long most heap bytes of rows to hold
+	 * @return double[][] - rows, null if over the limit
+	 * @throws IOException if body cannot be read
+	 */
+	private static double[][] readRows(InputStream in, long maxBytes) throws IOException
+	{
+		ArrayList<double[]> rows = new ArrayList<>();
+		long held = 0;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+			String[] parts = line.split("\\s+");
+			if (!rows.isEmpty() && parts.length != rows.get(0).length)
+				throw new IllegalArgumentException("Every row needs " + rows.get(0).length + " values");
+			held += rowBytes(1, parts.length);
+			if (held > maxBytes)
+				return null;
+			double[] row = new double[parts.length];
+			for (int j=0; j<parts.length; j++)
+				row[j] = Double.parseDouble(parts[j]);
+			rows.add(row);
+		}
+		return rows.toArray(new double[0][]);
+	}
+
+	/**
+	 * Parses a URL query into keys and values
+	 * @param raw - String raw query, may be null
+	 * @return HashMap<String, String>
+	 */
+	private static HashMap<String, String> query(String raw)
+	{
+		HashMap<String, String> map = new HashMap<>();
+		if (raw == null)
+			return map;
+		for (String pair:raw.split("&"))
+		{
+			int eq = pair.indexOf('=');
+			if (eq > 0)
+				map.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return map;
+	}
+
+	/**
+	 * Returns text as a JSON string
+	 * @param s - String text
+	 * @return String
+	 */
+	static String quote(String s)
+	{
+		StringBuilder b = new StringBuilder("\"");
+		for (char c:String.valueOf(s).toCharArray())
+			if (c == '"' || c == '\\')
+				b.append('\\').append(c);
+			else if (c < ' ')
+				b.append(String.format("\\u%04x", (int) c));
+			else
+				b.append(c);
+		return b.append('"').toString();
+	}
+
+	///// GETTERS /////
+
+	/**
+	 * Returns port service listens on
+	 * @return int
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+}